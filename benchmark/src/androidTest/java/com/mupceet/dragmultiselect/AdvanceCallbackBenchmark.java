@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.mupceet.dragmultiselect.DragMultiSelectHelper.AdvanceCallback;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Benchmarks of {@link AdvanceCallback} in every {@link AdvanceCallback.Behavior}, half of the
+ * items are selected before the gesture.
+ */
+@RunWith(Parameterized.class)
+public class AdvanceCallbackBenchmark {
+    private static final int RANGE_LENGTH = 1000;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final AdvanceCallback.Behavior mBehavior;
+    private final int mSize;
+    private TestCallback mCallback;
+
+    public AdvanceCallbackBenchmark(AdvanceCallback.Behavior behavior, int size) {
+        mBehavior = behavior;
+        mSize = size;
+    }
+
+    @Parameterized.Parameters(name = "{0}_size={1}")
+    public static List<Object[]> parameters() {
+        return BenchmarkData.behaviorsAndSizes();
+    }
+
+    @Before
+    public void setUp() {
+        mCallback = new TestCallback(mBehavior, mSize);
+    }
+
+    @Test
+    public void selectStartAndEnd() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mCallback.onSelectStart(0);
+            mCallback.onSelectEnd(0);
+        }
+    }
+
+    @Test
+    public void selectChange() {
+        final int end = Math.min(mSize, RANGE_LENGTH);
+        mCallback.onSelectStart(0);
+        boolean isSelected = true;
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (int position = 0; position < end; position++) {
+                mCallback.onSelectChange(position, isSelected);
+            }
+            isSelected = !isSelected;
+        }
+        mCallback.onSelectEnd(0);
+    }
+
+    @Test
+    public void selectRangeChange() {
+        final int end = Math.min(mSize, RANGE_LENGTH) - 1;
+        mCallback.onSelectStart(0);
+        boolean isSelected = true;
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mCallback.onSelectRangeChange(0, end, isSelected);
+            isSelected = !isSelected;
+        }
+        mCallback.onSelectEnd(0);
+    }
+
+    private static class TestCallback extends AdvanceCallback<Integer> {
+        private final boolean[] mSelected;
+        private final Set<Integer> mSelectedIds = new HashSet<>();
+
+        TestCallback(Behavior behavior, int size) {
+            super(behavior);
+            mSelected = new boolean[size];
+            for (int i = 0; i < size; i += 2) {
+                mSelected[i] = true;
+                mSelectedIds.add(i);
+            }
+        }
+
+        @Override
+        public Set<Integer> currentSelectedId() {
+            return mSelectedIds;
+        }
+
+        @Override
+        public Integer getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public boolean updateSelectState(int position, boolean isSelected) {
+            mSelected[position] = isSelected;
+            return true;
+        }
+
+        @Override
+        public void updateSelectRangeState(int fromInclusive, int toInclusive, boolean isSelected) {
+            for (int position = fromInclusive; position <= toInclusive; position++) {
+                mSelected[position] = isSelected;
+            }
+        }
+    }
+}
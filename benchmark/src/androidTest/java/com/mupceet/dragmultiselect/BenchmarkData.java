@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shared parameters of the benchmarks.
+ */
+final class BenchmarkData {
+    private static final int[] SIZES = {100, 10_000, 1_000_000};
+
+    private BenchmarkData() {
+    }
+
+    static List<Object[]> sizes() {
+        Object[][] data = new Object[SIZES.length][];
+        for (int i = 0; i < SIZES.length; i++) {
+            data[i] = new Object[]{SIZES[i]};
+        }
+        return Arrays.asList(data);
+    }
+
+    static List<Object[]> behaviorsAndSizes() {
+        DragMultiSelectHelper.AdvanceCallback.Behavior[] behaviors =
+                DragMultiSelectHelper.AdvanceCallback.Behavior.values();
+        Object[][] data = new Object[behaviors.length * SIZES.length][];
+        int i = 0;
+        for (DragMultiSelectHelper.AdvanceCallback.Behavior behavior : behaviors) {
+            for (int size : SIZES) {
+                data[i++] = new Object[]{behavior, size};
+            }
+        }
+        return Arrays.asList(data);
+    }
+}
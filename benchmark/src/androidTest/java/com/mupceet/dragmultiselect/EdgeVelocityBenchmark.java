@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.mupceet.dragmultiselect.core.EdgeVelocityCalculator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.List;
+
+/**
+ * Benchmarks of the hotspot edge and auto scroll velocity computation on move events.
+ */
+@RunWith(Parameterized.class)
+public class EdgeVelocityBenchmark {
+    private static final int STEP_COUNT = 100;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final int mSize;
+    private float mValueSum;
+
+    public EdgeVelocityBenchmark(int size) {
+        mSize = size;
+    }
+
+    @Parameterized.Parameters(name = "size={0}")
+    public static List<Object[]> sizes() {
+        return BenchmarkData.sizes();
+    }
+
+    @Test
+    public void getEdgeValue() {
+        final EdgeVelocityCalculator calculator = new EdgeVelocityCalculator();
+        calculator.setRelativeHotspotEdges(0.2f);
+        final float size = TestRecyclerViews.HEIGHT;
+        final BenchmarkState state = mBenchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            i = (i + 1) % STEP_COUNT;
+            mValueSum += calculator.getEdgeValue(size, size * i / STEP_COUNT, true);
+        }
+    }
+
+    /**
+     * Includes the selection update triggered when the velocity changes.
+     */
+    @Test
+    public void computeTargetVelocity() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final DragMultiSelectHelper helper = createHelper();
+                final RecyclerView recyclerView = TestRecyclerViews.create(
+                        InstrumentationRegistry.getInstrumentation().getTargetContext(), mSize, 1);
+                helper.attachToRecyclerView(recyclerView);
+                helper.activeDragSelect(0);
+                final float size = TestRecyclerViews.HEIGHT;
+                final BenchmarkState state = mBenchmarkRule.getState();
+                int i = 0;
+                while (state.keepRunning()) {
+                    i = (i + 1) % STEP_COUNT;
+                    helper.computeTargetVelocity(RecyclerView.VERTICAL, size * i / STEP_COUNT, size);
+                }
+                helper.inactiveSelect();
+                helper.attachToRecyclerView(null);
+            }
+        });
+    }
+
+    private static DragMultiSelectHelper createHelper() {
+        return new DragMultiSelectHelper(new DragMultiSelectHelper.Callback() {
+            @Override
+            public boolean onSelectChange(int position, boolean isSelected) {
+                return true;
+            }
+        });
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import android.view.View;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmarks of finding the item under the touch point, compared with
+ * {@link RecyclerView#findChildViewUnder(float, float)}.
+ */
+@RunWith(Parameterized.class)
+public class ItemPositionBenchmark {
+    /**
+     * Touch points of a diagonal drag over the RecyclerView.
+     */
+    private static final int POINT_COUNT = 64;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final int mSize;
+    private final int mSpanCount;
+    private int mPositionSum;
+
+    public ItemPositionBenchmark(int size, int spanCount) {
+        mSize = size;
+        mSpanCount = spanCount;
+    }
+
+    @Parameterized.Parameters(name = "size={0}_span={1}")
+    public static List<Object[]> parameters() {
+        List<Object[]> sizes = BenchmarkData.sizes();
+        Object[][] data = new Object[sizes.size() * 2][];
+        for (int i = 0; i < sizes.size(); i++) {
+            data[i * 2] = new Object[]{sizes.get(i)[0], 1};
+            data[i * 2 + 1] = new Object[]{sizes.get(i)[0], 6};
+        }
+        return Arrays.asList(data);
+    }
+
+    @Test
+    public void itemPositionResolver() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final RecyclerView recyclerView = createRecyclerView();
+                final ItemPositionResolver resolver = new LinearItemPositionResolver();
+                final BenchmarkState state = mBenchmarkRule.getState();
+                int i = 0;
+                while (state.keepRunning()) {
+                    i = (i + 1) % POINT_COUNT;
+                    mPositionSum += resolver.findItemPosition(recyclerView, x(i), y(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * The strategy used for staggered grids and custom layout managers, on the same layout.
+     */
+    @Test
+    public void childBoundsLayoutStrategy() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final RecyclerView recyclerView = createRecyclerView();
+                final LayoutStrategy strategy = new ChildBoundsLayoutStrategy();
+                final BenchmarkState state = mBenchmarkRule.getState();
+                int i = 0;
+                while (state.keepRunning()) {
+                    i = (i + 1) % POINT_COUNT;
+                    mPositionSum += strategy.findItemPosition(recyclerView, x(i), y(i));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void findChildViewUnder() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final RecyclerView recyclerView = createRecyclerView();
+                final BenchmarkState state = mBenchmarkRule.getState();
+                int i = 0;
+                while (state.keepRunning()) {
+                    i = (i + 1) % POINT_COUNT;
+                    View child = recyclerView.findChildViewUnder(x(i), y(i));
+                    if (child != null) {
+                        mPositionSum += recyclerView.getChildAdapterPosition(child);
+                    }
+                }
+            }
+        });
+    }
+
+    private RecyclerView createRecyclerView() {
+        return TestRecyclerViews.create(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(), mSize, mSpanCount);
+    }
+
+    private static float x(int i) {
+        return (i + 0.5f) * TestRecyclerViews.WIDTH / POINT_COUNT;
+    }
+
+    private static float y(int i) {
+        return (i + 0.5f) * TestRecyclerViews.HEIGHT / POINT_COUNT;
+    }
+}
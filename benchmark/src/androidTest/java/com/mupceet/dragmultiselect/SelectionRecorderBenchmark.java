@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.mupceet.dragmultiselect.core.SelectionRecorder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.List;
+
+/**
+ * Benchmarks of {@link SelectionRecorder}, the end position jumps back
+ * and forth over the whole list like a fast auto scroll.
+ */
+@RunWith(Parameterized.class)
+public class SelectionRecorderBenchmark {
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final int mSize;
+    private int mChangedCount;
+
+    public SelectionRecorderBenchmark(int size) {
+        mSize = size;
+    }
+
+    @Parameterized.Parameters(name = "size={0}")
+    public static List<Object[]> sizes() {
+        return BenchmarkData.sizes();
+    }
+
+    @Test
+    public void selectUpdate() {
+        final SelectionRecorder recorder = new SelectionRecorder();
+        final SelectionRecorder.RangeConsumer consumer = new SelectionRecorder.RangeConsumer() {
+            @Override
+            public void onRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+                mChangedCount += toInclusive - fromInclusive + 1;
+            }
+        };
+        final int step = Math.max(1, mSize / 64);
+        int position = mSize / 2;
+        int direction = 1;
+        recorder.selectFirst(position);
+
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            position += direction * step;
+            if (position >= mSize) {
+                position = mSize - 1;
+                direction = -1;
+            } else if (position < 0) {
+                position = 0;
+                direction = 1;
+            }
+            if (recorder.selectUpdate(position)) {
+                recorder.dispatchUpdate(consumer);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the auto scroll delta computation at 120Hz, driven by a synthetic clock.
+ */
+@State(Scope.Thread)
+public class AutoScrollerBenchmark {
+    private static final long FRAME_INTERVAL_NANOS = 1000000000L / 120;
+
+    private long mNow = 1;
+    private AutoScroller mScroller;
+
+    @Setup
+    public void setUp() {
+        mScroller = new AutoScroller(new AutoScroller.ScrollStateChangeListener() {
+            @Override
+            public void onScrollStateChange(int scrollState) {
+            }
+        }, new Clock() {
+            @Override
+            public long nanoTime() {
+                return mNow;
+            }
+        });
+        mScroller.setVelocity(0.1f);
+        mScroller.setVelocity(0.3f);
+    }
+
+    @Benchmark
+    public int getDelta() {
+        mNow += FRAME_INTERVAL_NANOS;
+        return mScroller.getDelta(mNow);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the hotspot edge and auto scroll velocity computation.
+ */
+@State(Scope.Thread)
+public class EdgeVelocityBenchmark {
+    private static final float SIZE = 1920;
+    private static final int STEP_COUNT = 100;
+
+    private final EdgeVelocityCalculator mCalculator = new EdgeVelocityCalculator();
+    private int mStep;
+
+    @Setup
+    public void setUp() {
+        mCalculator.setRelativeHotspotEdges(0.2f);
+        mCalculator.setRelativeVelocity(1f);
+        mCalculator.setMinimumVelocity(315 * 2.75f);
+        mCalculator.setMaximumVelocity(1575 * 2.75f);
+    }
+
+    @Benchmark
+    public float computeVelocity() {
+        mStep = (mStep + 1) % STEP_COUNT;
+        final float value = mCalculator.getEdgeValue(SIZE, SIZE * mStep / STEP_COUNT, true);
+        return mCalculator.computeVelocity(value, SIZE);
+    }
+}
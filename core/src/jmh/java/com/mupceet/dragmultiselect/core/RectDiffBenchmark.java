@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of {@link RectDiff} on a grid of 6 columns, with a rectangle which covers most
+ * of the grid and changes by a few rows or one column per frame.
+ */
+@State(Scope.Thread)
+public class RectDiffBenchmark {
+    private static final int SPAN_COUNT = 6;
+    /**
+     * Rows passed in each frame.
+     */
+    private static final int ROWS_PER_FRAME = 4;
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private final RectDiff mRectDiff = new RectDiff();
+    private SelectionRecorder.RangeConsumer mConsumer;
+    private int mRowCount;
+    private int mRow;
+    private int mColumn;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        mConsumer = new SelectionRecorder.RangeConsumer() {
+            @Override
+            public void onRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+                blackhole.consume(toInclusive - fromInclusive);
+            }
+        };
+        mRectDiff.setGrid(SPAN_COUNT, size);
+        mRowCount = (size + SPAN_COUNT - 1) / SPAN_COUNT;
+    }
+
+    @Benchmark
+    public void growRows() {
+        final int lastRow = mRow;
+        mRow = (mRow + ROWS_PER_FRAME) % mRowCount;
+        mRectDiff.diff(0, lastRow, 1, 4, 0, mRow, 1, 4, mConsumer);
+    }
+
+    @Benchmark
+    public void changeColumns() {
+        final int lastColumn = mColumn;
+        mColumn = (mColumn + 1) % SPAN_COUNT;
+        mRectDiff.diff(0, mRowCount - 1, 0, lastColumn, 0, mRowCount - 1, 0, mColumn, mConsumer);
+    }
+}
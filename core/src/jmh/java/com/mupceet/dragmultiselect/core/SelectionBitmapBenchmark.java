@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of {@link SelectionBitmap}, the selection is made of ranges of 64 selected and
+ * 64 unselected items like several drag selections.
+ */
+@State(Scope.Thread)
+public class SelectionBitmapBenchmark {
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private final SelectionBitmap mBitmap = new SelectionBitmap();
+    private int mPosition;
+
+    @Setup
+    public void setUp() {
+        for (int from = 0; from < size; from += 128) {
+            mBitmap.setRange(from, Math.min(size - 1, from + 63), true);
+        }
+    }
+
+    @Benchmark
+    public SelectionBitmap snapshot() {
+        return mBitmap.snapshot();
+    }
+
+    @Benchmark
+    public boolean contains() {
+        mPosition = (mPosition + 97) % size;
+        return mBitmap.contains(mPosition);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of a whole synthetic drag gesture through {@link SelectionEngine}: the finger
+ * drags down to the end of the list with auto scroll, then back to the start.
+ */
+@State(Scope.Thread)
+public class SelectionEngineBenchmark {
+    /**
+     * Items passed in each frame.
+     */
+    private static final int ITEMS_PER_FRAME = 24;
+    /**
+     * Move events received in each frame, as on a panel with a high touch sampling rate.
+     */
+    private static final int EVENTS_PER_FRAME = 4;
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private SelectionEngine mEngine;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        mEngine = new SelectionEngine(new SelectionListener() {
+            @Override
+            public boolean onSelectChange(int position, boolean isSelected) {
+                blackhole.consume(position);
+                return true;
+            }
+
+            @Override
+            public void onSelectRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+                blackhole.consume(toInclusive - fromInclusive);
+            }
+
+            @Override
+            public void onSelectionFlush(int fromInclusive, int toInclusive) {
+                blackhole.consume(toInclusive - fromInclusive);
+            }
+
+            @Override
+            public void onSelectStart(int start) {
+            }
+
+            @Override
+            public void onSelectEnd(int end) {
+            }
+        });
+    }
+
+    @Benchmark
+    public void dragGesture() {
+        final int anchor = size / 2;
+        mEngine.activeDragSelect(anchor);
+        for (int position = anchor; position < size; position += ITEMS_PER_FRAME) {
+            mEngine.updateSelectedRange(position);
+        }
+        for (int position = size - 1; position >= 0; position -= ITEMS_PER_FRAME) {
+            mEngine.updateSelectedRange(position);
+        }
+        mEngine.onGestureEnd();
+    }
+
+    @Benchmark
+    public void dragGestureCoalesced() {
+        mEngine.setCoalesceUpdates(true);
+        final int anchor = size / 2;
+        final int step = ITEMS_PER_FRAME / EVENTS_PER_FRAME;
+        mEngine.activeDragSelect(anchor);
+        int event = 0;
+        for (int position = anchor; position < size; position += step) {
+            mEngine.updateSelectedRange(position);
+            if (++event % EVENTS_PER_FRAME == 0) {
+                mEngine.flushPendingUpdates();
+            }
+        }
+        for (int position = size - 1; position >= 0; position -= step) {
+            mEngine.updateSelectedRange(position);
+            if (++event % EVENTS_PER_FRAME == 0) {
+                mEngine.flushPendingUpdates();
+            }
+        }
+        mEngine.onGestureEnd();
+        mEngine.setCoalesceUpdates(false);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Benchmarks of publishing a drag gesture to {@link SelectionPipeline} while the sink falls
+ * behind: the delivery tasks only run after the gesture ends, so the pending changes are
+ * compacted.
+ */
+@State(Scope.Thread)
+public class SelectionPipelineBenchmark {
+    /**
+     * Items passed in each frame.
+     */
+    private static final int ITEMS_PER_FRAME = 24;
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private final List<Runnable> mTasks = new ArrayList<>();
+    private SelectionPipeline mPipeline;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        mPipeline = new SelectionPipeline(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mTasks.add(command);
+            }
+        }, new SelectionPipeline.Sink() {
+            @Override
+            public void onRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+                blackhole.consume(toInclusive - fromInclusive);
+            }
+
+            @Override
+            public void onCommit(int start, int end) {
+                blackhole.consume(end - start);
+            }
+        });
+    }
+
+    @Benchmark
+    public void dragGesture() {
+        final int anchor = size / 2;
+        int last = anchor;
+        for (int position = anchor + ITEMS_PER_FRAME; position < size;
+                position += ITEMS_PER_FRAME) {
+            mPipeline.publish(last + 1, position, true);
+            last = position;
+        }
+        for (int position = last - ITEMS_PER_FRAME; position >= 0;
+                position -= ITEMS_PER_FRAME) {
+            if (position >= anchor) {
+                mPipeline.publish(position + 1, last, false);
+            } else {
+                mPipeline.publish(position, Math.min(last, anchor) - 1, true);
+            }
+            last = position;
+        }
+        mPipeline.commit(anchor, last);
+        for (int i = 0; i < mTasks.size(); i++) {
+            mTasks.get(i).run();
+        }
+        mTasks.clear();
+    }
+}
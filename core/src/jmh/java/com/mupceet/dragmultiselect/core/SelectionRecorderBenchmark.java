@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of {@link SelectionRecorder}, the end position jumps back and forth over the
+ * whole list like a fast auto scroll.
+ */
+@State(Scope.Thread)
+public class SelectionRecorderBenchmark {
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private final SelectionRecorder mRecorder = new SelectionRecorder();
+    private SelectionRecorder.RangeConsumer mConsumer;
+    private int mStep;
+    private int mPosition;
+    private int mDirection;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        mConsumer = new SelectionRecorder.RangeConsumer() {
+            @Override
+            public void onRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+                blackhole.consume(toInclusive - fromInclusive);
+            }
+        };
+        mStep = Math.max(1, size / 64);
+        mPosition = size / 2;
+        mDirection = 1;
+        mRecorder.selectFirst(mPosition);
+    }
+
+    @Benchmark
+    public void selectUpdate() {
+        mPosition += mDirection * mStep;
+        if (mPosition >= size) {
+            mPosition = size - 1;
+            mDirection = -1;
+        } else if (mPosition < 0) {
+            mPosition = 0;
+            mDirection = 1;
+        }
+        if (mRecorder.selectUpdate(mPosition)) {
+            mRecorder.dispatchUpdate(mConsumer);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of replaying a recorded gesture through {@link SelectionEngine}: the finger
+ * drags down to the end of the list with auto scroll, then back to the start. A trace
+ * recorded on a device can be benchmarked the same way.
+ */
+@State(Scope.Thread)
+public class TraceReplayBenchmark {
+    /**
+     * Items passed in each frame.
+     */
+    private static final int ITEMS_PER_FRAME = 24;
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private SelectionListener mListener;
+    private GestureTrace mTrace;
+    private byte[] mEncoded;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        mListener = new SelectionListener() {
+            @Override
+            public boolean onSelectChange(int position, boolean isSelected) {
+                blackhole.consume(position);
+                return true;
+            }
+
+            @Override
+            public void onSelectRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+                blackhole.consume(toInclusive - fromInclusive);
+            }
+
+            @Override
+            public void onSelectionFlush(int fromInclusive, int toInclusive) {
+                blackhole.consume(toInclusive - fromInclusive);
+            }
+
+            @Override
+            public void onSelectStart(int start) {
+            }
+
+            @Override
+            public void onSelectEnd(int end) {
+            }
+        };
+        final int anchor = size / 2;
+        // Each update records the call, the range change and the flush.
+        mTrace = new GestureTrace(6 * (size / ITEMS_PER_FRAME) + 64);
+        final SelectionEngine engine = new SelectionEngine(mListener);
+        engine.setTrace(mTrace);
+        engine.activeDragSelect(anchor);
+        for (int position = anchor; position < size; position += ITEMS_PER_FRAME) {
+            engine.updateSelectedRange(position);
+        }
+        for (int position = size - 1; position >= 0; position -= ITEMS_PER_FRAME) {
+            engine.updateSelectedRange(position);
+        }
+        engine.onGestureEnd();
+        mEncoded = mTrace.toByteArray();
+    }
+
+    @Benchmark
+    public int replay() {
+        return TraceReplayer.replay(mTrace, new SelectionEngine(mListener));
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return mTrace.toByteArray();
+    }
+
+    @Benchmark
+    public GestureTrace decode() {
+        return GestureTrace.fromByteArray(mEncoded);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+/**
+ * Keeps the auto scroll velocity and computes the scroll delta of each frame.
+ */
+public class AutoScroller {
+    private static final float NANOS_PER_MS = 1000000f;
+    private final Clock mClock;
+    /**
+     * Velocity in pixels per millisecond.
+     */
+    private float mVelocity = 0;
+    private long mLastFrameTimeNanos = 0;
+    /**
+     * The fractional pixels which are not scrolled yet.
+     */
+    private float mRemainder = 0;
+    /**
+     * Time to reach the target velocity after the scroll starts, in nanoseconds.
+     */
+    private long mRampUpDurationNanos = 0;
+    private long mRampStartTimeNanos = 0;
+
+    /**
+     * Indicates automatically scroll.
+     */
+    private boolean mIsScrolling;
+
+    public interface ScrollStateChangeListener {
+        int SCROLL_IDLE = 1;
+        int SCROLL_STARTING = 0;
+        int SCROLL_STOPPING = 2;
+        void onScrollStateChange(int scrollState);
+    }
+    private final ScrollStateChangeListener mScrollStateChangeListener;
+
+    public AutoScroller(ScrollStateChangeListener scrollStateChangeListener) {
+        this(scrollStateChangeListener, Clock.SYSTEM);
+    }
+
+    /**
+     * @param scrollStateChangeListener Listener of the scroll state.
+     * @param clock                     Clock in the same time base as the frame time.
+     */
+    public AutoScroller(ScrollStateChangeListener scrollStateChangeListener, Clock clock) {
+        mScrollStateChangeListener = scrollStateChangeListener;
+        mClock = clock;
+    }
+
+    /**
+     * Sets the time to reach the target velocity after the scroll starts or turns around,
+     * like the ramp up of AOSP {@code AutoScrollHelper}. The velocity eases out to the target,
+     * so a scroll at high speed doesn't overshoot as soon as it starts.
+     *
+     * @param durationMillis The duration in milliseconds, 0 to scroll at the target velocity
+     *                       at once. It's 0 by default.
+     */
+    public void setRampUpDuration(long durationMillis) {
+        mRampUpDurationNanos = Math.max(0, durationMillis) * (long) NANOS_PER_MS;
+    }
+
+    public void setVelocity(float velocity) {
+        Logger.d("AutoScroller setVelocity {} -> {}", mVelocity, velocity);
+        if (velocity != 0) {
+            boolean shouldStart = Math.abs(mVelocity) > 0
+                    && Math.abs(velocity) > Math.abs(mVelocity) ;
+            if (!mIsScrolling && shouldStart) {
+                mLastFrameTimeNanos = mClock.nanoTime();
+                mRampStartTimeNanos = mLastFrameTimeNanos;
+                mRemainder = 0;
+                mIsScrolling = true;
+                mScrollStateChangeListener.onScrollStateChange(ScrollStateChangeListener.SCROLL_STARTING);
+            } else {
+                mScrollStateChangeListener.onScrollStateChange(ScrollStateChangeListener.SCROLL_IDLE);
+            }
+            if ((velocity > 0) != (mVelocity > 0)) {
+                // Don't carry the fraction over to the opposite direction.
+                mRemainder = 0;
+                mRampStartTimeNanos = mClock.nanoTime();
+            }
+        } else {
+            if (mIsScrolling) {
+                mIsScrolling = false;
+                mLastFrameTimeNanos = 0;
+                mRemainder = 0;
+                mScrollStateChangeListener.onScrollStateChange(ScrollStateChangeListener.SCROLL_STOPPING);
+            } else {
+                mScrollStateChangeListener.onScrollStateChange(ScrollStateChangeListener.SCROLL_IDLE);
+            }
+        }
+        mVelocity = velocity;
+    }
+
+    /**
+     * Compute the scroll delta of this frame. The fractional part is accumulated and
+     * scrolled in the following frames, so slow scrolling doesn't stall at high refresh
+     * rates.
+     *
+     * @param frameTimeNanos The time of the frame, in the time base of the clock.
+     * @return The pixels to scroll in this frame.
+     */
+    public int getDelta(long frameTimeNanos) {
+        if (mLastFrameTimeNanos == 0) {
+            Logger.e("Cannot compute scroll delta before scrolling start");
+            return 0;
+        }
+        // The vsync time of the first frame may be earlier than the start time.
+        final long elapsedNanos = Math.max(0, frameTimeNanos - mLastFrameTimeNanos);
+        mLastFrameTimeNanos = Math.max(mLastFrameTimeNanos, frameTimeNanos);
+        mRemainder += elapsedNanos / NANOS_PER_MS * mVelocity * getRampFraction();
+        final int delta = (int) mRemainder;
+        mRemainder -= delta;
+        Logger.d("AutoScroller spend time(ns):{}, delta:{}", elapsedNanos, delta);
+        return delta;
+    }
+
+    /**
+     * @return The fraction of the target velocity reached by the ramp up, eased out like
+     * AOSP {@code AutoScrollHelper}.
+     */
+    private float getRampFraction() {
+        if (mRampUpDurationNanos <= 0) {
+            return 1f;
+        }
+        final long elapsedNanos = mLastFrameTimeNanos - mRampStartTimeNanos;
+        if (elapsedNanos >= mRampUpDurationNanos) {
+            return 1f;
+        }
+        final float value = Math.max(0, elapsedNanos) / (float) mRampUpDurationNanos;
+        return value * (2 - value);
+    }
+
+    public float getVelocity() {
+        return mVelocity;
+    }
+
+    public boolean isScrolling() {
+        return mIsScrolling;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+/**
+ * Computes the auto scroll velocity from the position of the touch point in the hotspot
+ * areas. The leading and trailing hotspot areas are always the same size.
+ */
+public class EdgeVelocityCalculator {
+    public static final float NO_MAX = Float.MAX_VALUE;
+    public static final float NO_MIN = 0;
+    public static final float RELATIVE_UNSPECIFIED = 0;
+
+    /**
+     * Edge insets used to activate auto-scrolling.
+     */
+    private float mHotspotRelativeEdges = RELATIVE_UNSPECIFIED;
+    /**
+     * Clamping values for edge insets used to activate auto-scrolling.
+     */
+    private float mHotspotMaximumEdges = NO_MAX;
+    /**
+     * Relative scrolling velocity at maximum edge distance, per millisecond.
+     */
+    private float mRelativeVelocity = RELATIVE_UNSPECIFIED;
+    /**
+     * Clamping values used for scrolling velocity, in pixels per millisecond.
+     */
+    private float mMinimumVelocity = NO_MIN;
+    /**
+     * Clamping values used for scrolling velocity, in pixels per millisecond.
+     */
+    private float mMaximumVelocity = NO_MAX;
+    /**
+     * Whether moving beyond the edge keeps scrolling at the maximum velocity.
+     */
+    private boolean mExtendBeyondEdges = true;
+    /**
+     * Maps the edge value to the fraction of the target velocity.
+     */
+    private VelocityInterpolator mInterpolator = VelocityInterpolator.LINEAR;
+    /**
+     * Time to scroll across the whole content at the target velocity in milliseconds, or 0 if
+     * the velocity doesn't adapt to the content.
+     */
+    private float mAdaptiveDuration = 0;
+    /**
+     * Estimated size of the whole content along the scroll axis, in pixels.
+     */
+    private float mContentExtent = 0;
+
+    /**
+     * @param ratio The edge size as a fraction of the host view size.
+     */
+    public void setRelativeHotspotEdges(float ratio) {
+        mHotspotRelativeEdges = ratio;
+    }
+
+    /**
+     * @param maximumHotspotEdges The maximum edge size in pixels.
+     */
+    public void setMaximumHotspotEdges(float maximumHotspotEdges) {
+        mHotspotMaximumEdges = maximumHotspotEdges;
+    }
+
+    /**
+     * @param velocity The target velocity as a fraction of the host view size per second.
+     */
+    public void setRelativeVelocity(float velocity) {
+        mRelativeVelocity = velocity / 1000f;
+    }
+
+    /**
+     * @param velocity The minimum scrolling velocity in pixels per second.
+     */
+    public void setMinimumVelocity(float velocity) {
+        mMinimumVelocity = velocity / 1000f;
+    }
+
+    /**
+     * @param velocity The maximum scrolling velocity in pixels per second.
+     */
+    public void setMaximumVelocity(float velocity) {
+        mMaximumVelocity = velocity / 1000f;
+    }
+
+    /**
+     * @param extendBeyondEdges Whether moving beyond the edge keeps scrolling at the maximum
+     *                          velocity once the scroll started.
+     */
+    public void setExtendBeyondEdges(boolean extendBeyondEdges) {
+        mExtendBeyondEdges = extendBeyondEdges;
+    }
+
+    /**
+     * @param interpolator Maps how deep the touch point is in the hotspot area to the fraction
+     *                     of the target velocity, {@link VelocityInterpolator#LINEAR} by
+     *                     default.
+     */
+    public void setInterpolator(VelocityInterpolator interpolator) {
+        mInterpolator = interpolator != null ? interpolator : VelocityInterpolator.LINEAR;
+    }
+
+    /**
+     * Makes the target and the maximum velocity scale with the size of the content, so
+     * selecting across a long list takes bounded time. The velocity never drops below the
+     * one computed without adaption.
+     *
+     * @param durationMillis Time to scroll across the whole content at the target velocity in
+     *                       milliseconds, or 0 to disable the adaption.
+     */
+    public void setAdaptiveDuration(float durationMillis) {
+        mAdaptiveDuration = Math.max(0, durationMillis);
+    }
+
+    /**
+     * @param contentExtent The estimated size of the whole content along the scroll axis in
+     *                      pixels, used when the velocity adapts to the content.
+     */
+    public void setContentExtent(float contentExtent) {
+        mContentExtent = Math.max(0, contentExtent);
+    }
+
+    /**
+     * Compute how deep the touch point is in the hotspot areas.
+     *
+     * @param size        The size of the host view along the scroll axis.
+     * @param current     The touch point along the scroll axis.
+     * @param isScrolling Whether it's auto scrolling now.
+     * @return A value in [-1, 1], negative in the leading hotspot area, positive in the
+     * trailing one and 0 outside of them.
+     */
+    public float getEdgeValue(float size, float current, boolean isScrolling) {
+        final float edgeSize = constrain(mHotspotRelativeEdges * size, 0, mHotspotMaximumEdges);
+        final float valueLeading = constrainEdgeValue(current, edgeSize, isScrolling);
+        final float valueTrailing = constrainEdgeValue(size - current, edgeSize, isScrolling);
+        final float value = (valueTrailing - valueLeading);
+        if (value == 0) {
+            return 0;
+        }
+        return constrain(value, -1, 1);
+    }
+
+    /**
+     * Compute the scroll velocity of an edge value.
+     *
+     * @param edgeValue The value returned by {@link #getEdgeValue(float, float, boolean)}.
+     * @param size      The size of the host view along the scroll axis.
+     * @return The velocity in pixels per millisecond.
+     */
+    public float computeVelocity(float edgeValue, float size) {
+        if (edgeValue == 0) {
+            // The edge in this direction is not activated.
+            return 0;
+        }
+        float targetVelocity = mRelativeVelocity * size;
+        float maximumVelocity = mMaximumVelocity;
+        if (mAdaptiveDuration > 0 && mContentExtent > 0) {
+            final float adaptiveVelocity = mContentExtent / mAdaptiveDuration;
+            targetVelocity = Math.max(targetVelocity, adaptiveVelocity);
+            maximumVelocity = Math.max(maximumVelocity, adaptiveVelocity);
+        }
+        final float fraction = mInterpolator.getInterpolation(Math.abs(edgeValue));
+        final float velocity = constrain(fraction * targetVelocity, mMinimumVelocity,
+                maximumVelocity);
+        return edgeValue > 0 ? velocity : -velocity;
+    }
+
+    private float constrainEdgeValue(float current, float leading, boolean isScrolling) {
+        if (leading == 0) {
+            return 0;
+        }
+        if (current < leading) {
+            if (current >= 0) {
+                // Movement up to the edge is scaled.
+                return 1f - current / leading;
+            } else if (isScrolling && mExtendBeyondEdges) {
+                // Movement beyond the edge is always maximum.
+                return 1f;
+            }
+        }
+        return 0;
+    }
+
+    private static float constrain(float value, float min, float max) {
+        if (value > max) {
+            return max;
+        } else return Math.max(value, min);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+/**
+ * Totals of the timings of a selection gesture: the auto scroll frames, the frames dropped
+ * between them and the updates of the selected range.
+ */
+public final class GestureMetrics {
+    /**
+     * The frame interval of a 60Hz display.
+     */
+    public static final long DEFAULT_FRAME_INTERVAL_NANOS = 16666667L;
+
+    private long mFrameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+    private long mStartTimeNanos;
+    private long mEndTimeNanos;
+    private long mLastFrameTimeNanos;
+
+    private int mFrameCount;
+    private int mDroppedFrameCount;
+    private long mTotalFrameNanos;
+    private long mMaxFrameNanos;
+
+    private int mUpdateCount;
+    private long mChangedPositionCount;
+    private long mTotalHitTestNanos;
+    private long mTotalUpdateNanos;
+    private long mMaxUpdateNanos;
+
+    /**
+     * @param frameIntervalNanos The frame interval of the display, used to detect the frames
+     *                           dropped between two scroll frames.
+     */
+    public void setFrameInterval(long frameIntervalNanos) {
+        mFrameIntervalNanos = frameIntervalNanos > 0
+                ? frameIntervalNanos : DEFAULT_FRAME_INTERVAL_NANOS;
+    }
+
+    /**
+     * Clears the totals and starts a new gesture.
+     *
+     * @param timeNanos The start time of the gesture.
+     */
+    public void start(long timeNanos) {
+        mStartTimeNanos = timeNanos;
+        mEndTimeNanos = timeNanos;
+        mLastFrameTimeNanos = 0;
+        mFrameCount = 0;
+        mDroppedFrameCount = 0;
+        mTotalFrameNanos = 0;
+        mMaxFrameNanos = 0;
+        mUpdateCount = 0;
+        mChangedPositionCount = 0;
+        mTotalHitTestNanos = 0;
+        mTotalUpdateNanos = 0;
+        mMaxUpdateNanos = 0;
+    }
+
+    /**
+     * @param timeNanos            The end time of the gesture.
+     * @param changedPositionCount The number of positions dispatched to the callbacks during
+     *                             the gesture, including the coalesced ones.
+     */
+    public void finish(long timeNanos, long changedPositionCount) {
+        mEndTimeNanos = timeNanos;
+        mChangedPositionCount = changedPositionCount;
+    }
+
+    /**
+     * Records an auto scroll frame. The scroll frames run back to back, so a gap of more than
+     * one frame interval since the last one means frames were dropped.
+     *
+     * @param frameTimeNanos The vsync time of the frame.
+     * @param durationNanos  The time spent in the frame.
+     * @return The number of frames dropped since the last scroll frame.
+     */
+    public int recordFrame(long frameTimeNanos, long durationNanos) {
+        int dropped = 0;
+        if (mLastFrameTimeNanos != 0 && frameTimeNanos > mLastFrameTimeNanos) {
+            final long intervals = (frameTimeNanos - mLastFrameTimeNanos
+                    + mFrameIntervalNanos / 2) / mFrameIntervalNanos;
+            dropped = (int) Math.max(0, intervals - 1);
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        mFrameCount++;
+        mDroppedFrameCount += dropped;
+        mTotalFrameNanos += durationNanos;
+        mMaxFrameNanos = Math.max(mMaxFrameNanos, durationNanos);
+        return dropped;
+    }
+
+    /**
+     * Marks the end of a run of scroll frames, so the gap until the next run is not counted
+     * as dropped frames.
+     */
+    public void stopFrames() {
+        mLastFrameTimeNanos = 0;
+    }
+
+    /**
+     * Records an update of the selected range.
+     *
+     * @param hitTestNanos The time spent finding the item under the touch point.
+     * @param updateNanos  The time spent updating the range, including the callbacks.
+     */
+    public void recordUpdate(long hitTestNanos, long updateNanos) {
+        mUpdateCount++;
+        mTotalHitTestNanos += hitTestNanos;
+        mTotalUpdateNanos += updateNanos;
+        mMaxUpdateNanos = Math.max(mMaxUpdateNanos, updateNanos);
+    }
+
+    public long getDurationNanos() {
+        return mEndTimeNanos - mStartTimeNanos;
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public int getDroppedFrameCount() {
+        return mDroppedFrameCount;
+    }
+
+    public long getTotalFrameNanos() {
+        return mTotalFrameNanos;
+    }
+
+    public long getMaxFrameNanos() {
+        return mMaxFrameNanos;
+    }
+
+    public int getUpdateCount() {
+        return mUpdateCount;
+    }
+
+    public long getChangedPositionCount() {
+        return mChangedPositionCount;
+    }
+
+    public long getTotalHitTestNanos() {
+        return mTotalHitTestNanos;
+    }
+
+    public long getTotalUpdateNanos() {
+        return mTotalUpdateNanos;
+    }
+
+    public long getMaxUpdateNanos() {
+        return mMaxUpdateNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "GestureMetrics{duration=" + getDurationNanos()
+                + ", frames=" + mFrameCount
+                + ", dropped=" + mDroppedFrameCount
+                + ", maxFrame=" + mMaxFrameNanos
+                + ", updates=" + mUpdateCount
+                + ", changedPositions=" + mChangedPositionCount
+                + ", hitTest=" + mTotalHitTestNanos
+                + ", update=" + mTotalUpdateNanos
+                + ", maxUpdate=" + mMaxUpdateNanos + "}";
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A ring buffer of the events of the selection gestures: the calls into
+ * {@link SelectionEngine}, the callbacks it made, the touch events and the auto scroll
+ * deltas of the host. Once full, the oldest records are overwritten, so it can stay attached
+ * in production at a fixed cost. It can be encoded into a compact binary form and replayed
+ * by {@link TraceReplayer}.
+ * <p>
+ * Each record has a type, a time in nanoseconds and up to three int arguments.
+ */
+public final class GestureTrace {
+    // Calls into the engine, which are replayed.
+    public static final int TYPE_ACTIVE_SLIDE = 1;
+    public static final int TYPE_ACTIVE_DRAG = 2;
+    public static final int TYPE_INACTIVE = 3;
+    public static final int TYPE_START_SLIDE = 4;
+    public static final int TYPE_COMMIT_SLIDE = 5;
+    public static final int TYPE_GESTURE_END_BEFORE_INTERCEPT = 6;
+    public static final int TYPE_GESTURE_END = 7;
+    public static final int TYPE_UPDATE = 8;
+    public static final int TYPE_FLUSH = 9;
+    public static final int TYPE_SET_AUTO_ENTER_SLIDE = 10;
+    public static final int TYPE_SET_ALLOW_DRAG_IN_SLIDE = 11;
+    public static final int TYPE_SET_COALESCE = 12;
+    public static final int TYPE_SET_BOX = 13;
+    public static final int TYPE_ITEMS_INSERTED = 14;
+    public static final int TYPE_ITEMS_REMOVED = 15;
+    public static final int TYPE_ITEMS_MOVED = 16;
+    public static final int TYPE_RELOCATE = 17;
+    // Callbacks made by the engine, which are compared on replay.
+    public static final int TYPE_SELECT_START = 32;
+    public static final int TYPE_SELECT_END = 33;
+    public static final int TYPE_SELECT_CHANGE = 34;
+    public static final int TYPE_RANGE_CHANGE = 35;
+    public static final int TYPE_SELECTION_FLUSH = 36;
+    public static final int TYPE_STATE_CHANGE = 37;
+    // Events of the host, which are kept for analysis only.
+    public static final int TYPE_MOTION = 64;
+    public static final int TYPE_SCROLL = 65;
+
+    private static final int MAGIC = 0x444D5354; // "DMST"
+    private static final int VERSION = 1;
+
+    private final Clock mClock;
+    private final byte[] mTypes;
+    private final long[] mTimes;
+    private final int[] mArgs;
+    /**
+     * Index of the oldest record.
+     */
+    private int mHead;
+    private int mSize;
+
+    /**
+     * @param capacity The maximum number of records kept.
+     */
+    public GestureTrace(int capacity) {
+        this(capacity, Clock.SYSTEM);
+    }
+
+    /**
+     * @param capacity The maximum number of records kept.
+     * @param clock    The clock to stamp the records with.
+     */
+    public GestureTrace(int capacity, Clock clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        mClock = clock;
+        mTypes = new byte[capacity];
+        mTimes = new long[capacity];
+        mArgs = new int[capacity * 3];
+    }
+
+    /**
+     * @return Whether the record is a call into the engine, which is replayed.
+     */
+    public static boolean isInput(int type) {
+        return type < TYPE_SELECT_START;
+    }
+
+    /**
+     * @return Whether the record is a callback made by the engine.
+     */
+    public static boolean isOutput(int type) {
+        return type >= TYPE_SELECT_START && type < TYPE_MOTION;
+    }
+
+    public void record(int type) {
+        record(type, mClock.nanoTime(), 0, 0, 0);
+    }
+
+    public void record(int type, int arg1) {
+        record(type, mClock.nanoTime(), arg1, 0, 0);
+    }
+
+    public void record(int type, int arg1, int arg2) {
+        record(type, mClock.nanoTime(), arg1, arg2, 0);
+    }
+
+    public void record(int type, int arg1, int arg2, int arg3) {
+        record(type, mClock.nanoTime(), arg1, arg2, arg3);
+    }
+
+    /**
+     * Records a touch event.
+     *
+     * @param action    The masked action of the event.
+     * @param x         The x coordinate of the event.
+     * @param y         The y coordinate of the event.
+     * @param timeNanos The time of the event.
+     */
+    public void recordMotion(int action, float x, float y, long timeNanos) {
+        record(TYPE_MOTION, timeNanos, action, Float.floatToIntBits(x),
+                Float.floatToIntBits(y));
+    }
+
+    public void record(int type, long timeNanos, int arg1, int arg2, int arg3) {
+        final int capacity = mTypes.length;
+        final int index;
+        if (mSize < capacity) {
+            index = (mHead + mSize) % capacity;
+            mSize++;
+        } else {
+            // Overwrite the oldest one.
+            index = mHead;
+            mHead = (mHead + 1) % capacity;
+        }
+        mTypes[index] = (byte) type;
+        mTimes[index] = timeNanos;
+        mArgs[index * 3] = arg1;
+        mArgs[index * 3 + 1] = arg2;
+        mArgs[index * 3 + 2] = arg3;
+    }
+
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * @return The number of records kept, at most the capacity.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public int capacity() {
+        return mTypes.length;
+    }
+
+    /**
+     * @param i The index of the record, 0 for the oldest one.
+     */
+    public int getType(int i) {
+        return mTypes[indexOf(i)];
+    }
+
+    public long getTimeNanos(int i) {
+        return mTimes[indexOf(i)];
+    }
+
+    /**
+     * @param i   The index of the record, 0 for the oldest one.
+     * @param arg The index of the argument, from 0 to 2.
+     */
+    public int getArg(int i, int arg) {
+        return mArgs[indexOf(i) * 3 + arg];
+    }
+
+    private int indexOf(int i) {
+        if (i < 0 || i >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", size: " + mSize);
+        }
+        return (mHead + i) % mTypes.length;
+    }
+
+    /**
+     * Encodes the records from the oldest one. Times are stored as the difference to the
+     * previous record and all values as varints, so a record usually takes a few bytes.
+     */
+    public byte[] toByteArray() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(16 + mSize * 6);
+        Varints.writeUnsigned(out, MAGIC);
+        Varints.writeUnsigned(out, VERSION);
+        Varints.writeUnsigned(out, mSize);
+        long lastTime = 0;
+        for (int i = 0; i < mSize; i++) {
+            final int index = indexOf(i);
+            final int type = mTypes[index];
+            out.write(type);
+            Varints.writeSigned(out, mTimes[index] - lastTime);
+            lastTime = mTimes[index];
+            final int argCount = argCount(type);
+            for (int arg = 0; arg < argCount; arg++) {
+                Varints.writeSigned(out, mArgs[index * 3 + arg]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes the records encoded by {@link #toByteArray()}.
+     *
+     * @param bytes The encoded records.
+     * @return A trace which just holds the records.
+     * @throws IllegalArgumentException if the bytes are not a valid trace.
+     */
+    public static GestureTrace fromByteArray(byte[] bytes) {
+        final Varints.Reader reader = new Varints.Reader(bytes);
+        if (reader.readUnsigned() != MAGIC || reader.readUnsigned() != VERSION) {
+            throw new IllegalArgumentException("Not a gesture trace");
+        }
+        final long size = reader.readUnsigned();
+        if (size > bytes.length) {
+            throw new IllegalArgumentException("Invalid record count: " + size);
+        }
+        final GestureTrace trace = new GestureTrace(Math.max(1, (int) size));
+        long time = 0;
+        for (int i = 0; i < size; i++) {
+            final int type = reader.readByte();
+            time += reader.readSigned();
+            final int[] args = new int[3];
+            final int argCount = argCount(type);
+            for (int arg = 0; arg < argCount; arg++) {
+                args[arg] = reader.readInt();
+            }
+            trace.record(type, time, args[0], args[1], args[2]);
+        }
+        return trace;
+    }
+
+    private static int argCount(int type) {
+        switch (type) {
+            case TYPE_ACTIVE_SLIDE:
+            case TYPE_INACTIVE:
+            case TYPE_COMMIT_SLIDE:
+            case TYPE_GESTURE_END_BEFORE_INTERCEPT:
+            case TYPE_GESTURE_END:
+            case TYPE_FLUSH:
+                return 0;
+            case TYPE_ACTIVE_DRAG:
+            case TYPE_START_SLIDE:
+            case TYPE_UPDATE:
+            case TYPE_SET_AUTO_ENTER_SLIDE:
+            case TYPE_SET_ALLOW_DRAG_IN_SLIDE:
+            case TYPE_SET_COALESCE:
+            case TYPE_SELECT_START:
+            case TYPE_SELECT_END:
+            case TYPE_SCROLL:
+                return 1;
+            case TYPE_SET_BOX:
+            case TYPE_ITEMS_INSERTED:
+            case TYPE_ITEMS_REMOVED:
+            case TYPE_RELOCATE:
+            case TYPE_SELECTION_FLUSH:
+            case TYPE_STATE_CHANGE:
+                return 2;
+            default:
+                return 3;
+        }
+    }
+}
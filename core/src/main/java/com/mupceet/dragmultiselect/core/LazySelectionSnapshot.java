@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import java.util.BitSet;
+
+/**
+ * A snapshot of the original selection state which only records the positions touched by
+ * the current selection.
+ * <p>
+ * A selection always covers the range between the start and the end position, so the
+ * touched positions are one contiguous range around the start position. Before a position
+ * is changed for the first time, its state is read from the {@link Source} and recorded;
+ * positions which were never touched still hold their original state in the source. The
+ * memory and time needed therefore grow with the length of the drag instead of the size of
+ * the existing selection.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class LazySelectionSnapshot {
+    /**
+     * Gives the current selection state of a position.
+     */
+    public interface Source {
+        boolean isSelected(int position);
+    }
+
+    /**
+     * Original states of the positions after the anchor, indexed by {@code position - anchor}.
+     */
+    private final BitSet mForward = new BitSet();
+    /**
+     * Original states of the positions before the anchor, indexed by
+     * {@code anchor - 1 - position}.
+     */
+    private final BitSet mBackward = new BitSet();
+    private Source mSource;
+    private int mAnchor;
+    private int mMin;
+    private int mMax;
+
+    /**
+     * Start a new snapshot and record the original state of the anchor position.
+     *
+     * @param anchor the start position of the selection.
+     * @param source the live selection state, it must not be changed before {@link #record}.
+     */
+    public void start(int anchor, Source source) {
+        clear();
+        mSource = source;
+        mAnchor = anchor;
+        mMin = anchor;
+        mMax = anchor;
+        if (source.isSelected(anchor)) {
+            mForward.set(0);
+        }
+    }
+
+    /**
+     * Record the original states of a range of positions if they are not recorded yet. Call
+     * this before the states of the positions are changed.
+     *
+     * @param fromInclusive the first position of the range.
+     * @param toInclusive   the last position of the range.
+     */
+    public void record(int fromInclusive, int toInclusive) {
+        if (mSource == null) {
+            return;
+        }
+        // Positions between the recorded range and the new range are recorded as well, to
+        // keep the recorded positions contiguous.
+        for (int position = mMin - 1; position >= fromInclusive && position >= 0; position--) {
+            if (mSource.isSelected(position)) {
+                mBackward.set(mAnchor - 1 - position);
+            }
+            mMin = position;
+        }
+        for (int position = mMax + 1; position <= toInclusive; position++) {
+            if (mSource.isSelected(position)) {
+                mForward.set(position - mAnchor);
+            }
+            mMax = position;
+        }
+    }
+
+    /**
+     * @return Whether the position was selected when the snapshot started.
+     */
+    public boolean wasSelected(int position) {
+        if (mSource == null) {
+            return false;
+        }
+        if (position < mMin || position > mMax) {
+            return mSource.isSelected(position);
+        }
+        if (position >= mAnchor) {
+            return mForward.get(position - mAnchor);
+        }
+        return mBackward.get(mAnchor - 1 - position);
+    }
+
+    /**
+     * Shift the recorded positions for items inserted into the adapter. The inserted items
+     * were not there when the snapshot started, so they were not selected.
+     *
+     * @param positionStart the position of the first inserted item.
+     * @param itemCount     the number of inserted items.
+     */
+    public void insertRange(int positionStart, int itemCount) {
+        if (mSource == null || itemCount <= 0 || positionStart > mMax) {
+            return;
+        }
+        if (positionStart <= mMin) {
+            mAnchor += itemCount;
+            mMin += itemCount;
+            mMax += itemCount;
+            return;
+        }
+        final BitSet states = collect();
+        final int split = positionStart - mMin;
+        final BitSet shifted = states.get(split, Math.max(split, states.length()));
+        states.clear(split, Math.max(split, states.length()));
+        for (int i = shifted.nextSetBit(0); i >= 0; i = shifted.nextSetBit(i + 1)) {
+            states.set(split + itemCount + i);
+        }
+        reset(mMin, mMax + itemCount, states);
+    }
+
+    /**
+     * Drop the recorded positions of items removed from the adapter and shift the ones after
+     * them.
+     *
+     * @param positionStart the position of the first removed item.
+     * @param itemCount     the number of removed items.
+     */
+    public void removeRange(int positionStart, int itemCount) {
+        if (mSource == null || itemCount <= 0 || positionStart > mMax) {
+            return;
+        }
+        final int removedEnd = positionStart + itemCount - 1;
+        if (removedEnd < mMin) {
+            mAnchor -= itemCount;
+            mMin -= itemCount;
+            mMax -= itemCount;
+            return;
+        }
+        final BitSet states = collect();
+        final int from = Math.max(positionStart, mMin) - mMin;
+        final int to = Math.min(removedEnd, mMax) - mMin + 1;
+        final BitSet kept = states.get(to, Math.max(to, states.length()));
+        states.clear(from, Math.max(from, states.length()));
+        for (int i = kept.nextSetBit(0); i >= 0; i = kept.nextSetBit(i + 1)) {
+            states.set(from + i);
+        }
+        final int min = Math.min(mMin, positionStart);
+        // If all the recorded positions are removed, the range is empty with mMax = mMin - 1.
+        reset(min, min + mMax - mMin - (to - from), states);
+    }
+
+    /**
+     * Move the recorded state of an item moved in the adapter. If it's not recorded yet but
+     * lands among the recorded positions, its state is read from the source.
+     *
+     * @param fromPosition the previous position of the item.
+     * @param toPosition   the new position of the item.
+     */
+    public void moveItem(int fromPosition, int toPosition) {
+        if (mSource == null || fromPosition == toPosition) {
+            return;
+        }
+        final boolean recorded = fromPosition >= mMin && fromPosition <= mMax;
+        final boolean selected = recorded && wasSelected(fromPosition);
+        removeRange(fromPosition, 1);
+        insertRange(toPosition, 1);
+        if (recorded) {
+            // Keep the recorded positions contiguous around the new position.
+            record(toPosition, toPosition);
+            setRecorded(toPosition, selected);
+        } else if (toPosition >= mMin && toPosition <= mMax) {
+            setRecorded(toPosition, mSource.isSelected(toPosition));
+        }
+    }
+
+    /**
+     * @return Whether the snapshot is started and not cleared.
+     */
+    public boolean isStarted() {
+        return mSource != null;
+    }
+
+    public void clear() {
+        mSource = null;
+        mForward.clear();
+        mBackward.clear();
+    }
+
+    /**
+     * @return The recorded states indexed by {@code position - mMin}.
+     */
+    private BitSet collect() {
+        final BitSet states = new BitSet();
+        for (int i = mForward.nextSetBit(0); i >= 0 && mAnchor + i <= mMax;
+                i = mForward.nextSetBit(i + 1)) {
+            states.set(mAnchor + i - mMin);
+        }
+        for (int i = mBackward.nextSetBit(0); i >= 0 && mAnchor - 1 - i >= mMin;
+                i = mBackward.nextSetBit(i + 1)) {
+            states.set(mAnchor - 1 - i - mMin);
+        }
+        return states;
+    }
+
+    /**
+     * Record the given states of the range again, anchored at its first position.
+     */
+    private void reset(int min, int max, BitSet states) {
+        mForward.clear();
+        mBackward.clear();
+        mForward.or(states);
+        mAnchor = min;
+        mMin = min;
+        mMax = max;
+    }
+
+    private void setRecorded(int position, boolean selected) {
+        if (position >= mAnchor) {
+            mForward.set(position - mAnchor, selected);
+        } else {
+            mBackward.set(mAnchor - 1 - position, selected);
+        }
+    }
+}
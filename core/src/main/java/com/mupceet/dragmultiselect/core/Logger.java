@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+/**
+ * Logger of the selection engine. The output goes to a {@link Sink}, which can be replaced,
+ * e.g. by the Android logcat or by a test.
+ * <p>
+ * Debug and info messages are only logged if debug is enabled. On the hot path, pass the
+ * values to the overloads with a format instead of concatenating the message, so it's only
+ * built when logged: each {@code {}} in the format is replaced by the next value. Integers
+ * have their own overloads, so they are not boxed unless logged. The consumer ProGuard rules
+ * of the library remove the debug and info calls from minified builds.
+ */
+public final class Logger {
+    private static final String TAG = "DMSH";
+    private static volatile Sink sSink = new Sink() {
+        @Override
+        public void d(String tag, String msg) {
+            System.out.println(tag + " D: " + msg);
+        }
+
+        @Override
+        public void i(String tag, String msg) {
+            System.out.println(tag + " I: " + msg);
+        }
+
+        @Override
+        public void e(String tag, String msg) {
+            System.err.println(tag + " E: " + msg);
+        }
+    };
+    /**
+     * Whether the sink is set by {@link #setSink(Sink)}, which a default sink doesn't replace.
+     */
+    private static boolean sCustomSink = false;
+    private static volatile boolean sDebug = false;
+
+    private Logger() {
+    }
+
+    /**
+     * Receives the log messages.
+     */
+    public interface Sink {
+        void d(String tag, String msg);
+
+        void i(String tag, String msg);
+
+        void e(String tag, String msg);
+    }
+
+    /**
+     * Sets where the log messages go. It replaces any default sink, e.g. the Android logcat
+     * installed by the library.
+     *
+     * @param sink The sink to use.
+     */
+    public static synchronized void setSink(Sink sink) {
+        sSink = sink;
+        sCustomSink = true;
+    }
+
+    /**
+     * Sets where the log messages go unless a sink is set by {@link #setSink(Sink)}, which
+     * is kept then. It's used by platform integrations to install their default output.
+     *
+     * @param sink The sink to use by default.
+     */
+    public static synchronized void setDefaultSink(Sink sink) {
+        if (!sCustomSink) {
+            sSink = sink;
+        }
+    }
+
+    /**
+     * Enable or disable debug logs.
+     *
+     * @param debug Indicates debug state.
+     */
+    public static void setDebug(boolean debug) {
+        sDebug = debug;
+    }
+
+    public static boolean isDebug() {
+        return sDebug;
+    }
+
+    public static void d(String msg) {
+        if (sDebug) {
+            sSink.d(TAG, msg);
+        }
+    }
+
+    public static void d(String format, long arg) {
+        if (sDebug) {
+            sSink.d(TAG, format(format, arg));
+        }
+    }
+
+    public static void d(String format, long arg1, long arg2) {
+        if (sDebug) {
+            sSink.d(TAG, format(format, arg1, arg2));
+        }
+    }
+
+    public static void d(String format, float arg1, float arg2) {
+        if (sDebug) {
+            sSink.d(TAG, format(format, arg1, arg2));
+        }
+    }
+
+    public static void d(String format, Object arg) {
+        if (sDebug) {
+            sSink.d(TAG, format(format, arg));
+        }
+    }
+
+    public static void e(String msg) {
+        sSink.e(TAG, msg);
+    }
+
+    public static void e(String format, long arg) {
+        sSink.e(TAG, format(format, arg));
+    }
+
+    public static void e(String format, Object arg) {
+        sSink.e(TAG, format(format, arg));
+    }
+
+    public static void i(String msg) {
+        if (sDebug) {
+            sSink.i(TAG, msg);
+        }
+    }
+
+    public static void i(String format, long arg) {
+        if (sDebug) {
+            sSink.i(TAG, format(format, arg));
+        }
+    }
+
+    public static void i(String format, Object arg) {
+        if (sDebug) {
+            sSink.i(TAG, format(format, arg));
+        }
+    }
+
+    public static void i(String format, Object arg1, Object arg2) {
+        if (sDebug) {
+            sSink.i(TAG, format(format, arg1, arg2));
+        }
+    }
+
+    /**
+     * Replaces each {@code {}} in the format by the next argument. Extra arguments are
+     * ignored, and extra placeholders are kept.
+     */
+    static String format(String format, Object... args) {
+        final StringBuilder builder = new StringBuilder(format.length() + 16 * args.length);
+        int start = 0;
+        for (Object arg : args) {
+            final int index = format.indexOf("{}", start);
+            if (index < 0) {
+                break;
+            }
+            builder.append(format, start, index).append(arg);
+            start = index + 2;
+        }
+        return builder.append(format, start, format.length()).toString();
+    }
+}
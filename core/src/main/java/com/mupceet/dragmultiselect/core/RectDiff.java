@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+/**
+ * Computes the difference between two rectangles of cells in a grid, whose positions are
+ * laid out row by row, as a few ranges of positions.
+ * <p>
+ * Only the rows whose cells change are visited: if both rectangles cover the same columns,
+ * these are the rows covered by one rectangle but not the other, otherwise the rows covered
+ * by either of them. Rows covering all the columns are contiguous in position, so a band of
+ * such rows is dispatched as one range, and other ranges which happen to be adjacent are
+ * merged as well. The cost is O(changed rows), independent of the number of cells.
+ * <p>
+ * A rectangle is given by its inclusive rows and columns, it's empty if {@code rowFrom >
+ * rowTo} or {@code columnFrom > columnTo}. This class is not thread safe.
+ */
+public final class RectDiff {
+    private int mSpanCount = 1;
+    private int mItemCount;
+    /**
+     * The pending range, merged with the next one if they are adjacent.
+     */
+    private int mPendingFrom;
+    private int mPendingTo = -1;
+    private SelectionRecorder.RangeConsumer mConsumer;
+    private boolean mIsSelected;
+
+    /**
+     * Sets the grid.
+     *
+     * @param spanCount the number of columns.
+     * @param itemCount the number of items, positions after the last item are skipped.
+     */
+    public void setGrid(int spanCount, int itemCount) {
+        mSpanCount = Math.max(1, spanCount);
+        mItemCount = itemCount;
+    }
+
+    /**
+     * Dispatch the cells covered by the new rectangle but not the old one as selected, then
+     * the cells covered by the old rectangle but not the new one as unselected.
+     */
+    public void diff(int oldRowFrom, int oldRowTo, int oldColumnFrom, int oldColumnTo,
+                     int newRowFrom, int newRowTo, int newColumnFrom, int newColumnTo,
+                     SelectionRecorder.RangeConsumer consumer) {
+        if (oldRowFrom > oldRowTo || oldColumnFrom > oldColumnTo) {
+            oldRowFrom = 0;
+            oldRowTo = -1;
+        }
+        if (newRowFrom > newRowTo || newColumnFrom > newColumnTo) {
+            newRowFrom = 0;
+            newRowTo = -1;
+        }
+        mConsumer = consumer;
+        mIsSelected = true;
+        subtract(newRowFrom, newRowTo, newColumnFrom, newColumnTo,
+                oldRowFrom, oldRowTo, oldColumnFrom, oldColumnTo);
+        flush();
+        mIsSelected = false;
+        subtract(oldRowFrom, oldRowTo, oldColumnFrom, oldColumnTo,
+                newRowFrom, newRowTo, newColumnFrom, newColumnTo);
+        flush();
+        mConsumer = null;
+    }
+
+    /**
+     * Emit the cells of rectangle a which are not in rectangle b, in ascending order.
+     */
+    private void subtract(int aRowFrom, int aRowTo, int aColumnFrom, int aColumnTo,
+                          int bRowFrom, int bRowTo, int bColumnFrom, int bColumnTo) {
+        if (aRowFrom > aRowTo) {
+            return;
+        }
+        final int overlapFrom = Math.max(aRowFrom, bRowFrom);
+        final int overlapTo = Math.min(aRowTo, bRowTo);
+        if (overlapFrom > overlapTo) {
+            emitRows(aRowFrom, aRowTo, aColumnFrom, aColumnTo);
+            return;
+        }
+        // Rows of a above and below b are entirely out of b.
+        emitRows(aRowFrom, overlapFrom - 1, aColumnFrom, aColumnTo);
+        if (aColumnFrom < bColumnFrom || aColumnTo > bColumnTo) {
+            // The rows in both rectangles keep the columns of a out of b, at most two runs.
+            final int leftTo = Math.min(aColumnTo, bColumnFrom - 1);
+            final int rightFrom = Math.max(aColumnFrom, bColumnTo + 1);
+            for (int row = overlapFrom; row <= overlapTo; row++) {
+                emitColumns(row, aColumnFrom, leftTo);
+                emitColumns(row, rightFrom, aColumnTo);
+            }
+        }
+        emitRows(overlapTo + 1, aRowTo, aColumnFrom, aColumnTo);
+    }
+
+    private void emitRows(int rowFrom, int rowTo, int columnFrom, int columnTo) {
+        if (rowFrom > rowTo) {
+            return;
+        }
+        if (columnFrom <= 0 && columnTo >= mSpanCount - 1) {
+            // Full rows are contiguous.
+            emit(rowFrom * mSpanCount, rowTo * mSpanCount + mSpanCount - 1);
+            return;
+        }
+        for (int row = rowFrom; row <= rowTo; row++) {
+            emitColumns(row, columnFrom, columnTo);
+        }
+    }
+
+    private void emitColumns(int row, int columnFrom, int columnTo) {
+        if (columnFrom > columnTo) {
+            return;
+        }
+        emit(row * mSpanCount + columnFrom, row * mSpanCount + columnTo);
+    }
+
+    private void emit(int from, int to) {
+        to = Math.min(to, mItemCount - 1);
+        if (from > to) {
+            return;
+        }
+        if (mPendingTo >= mPendingFrom && from == mPendingTo + 1) {
+            mPendingTo = to;
+            return;
+        }
+        flush();
+        mPendingFrom = from;
+        mPendingTo = to;
+    }
+
+    private void flush() {
+        if (mPendingTo >= mPendingFrom) {
+            mConsumer.onRangeChange(mPendingFrom, mPendingTo, mIsSelected);
+        }
+        mPendingFrom = 0;
+        mPendingTo = -1;
+    }
+}
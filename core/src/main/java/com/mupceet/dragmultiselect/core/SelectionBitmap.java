@@ -0,0 +1,709 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A compressed set of selected positions.
+ * <p>
+ * Like RoaringBitmap, positions are split into chunks of 65536 by their high 16 bits, and each
+ * chunk is stored in the smaller of two containers: a sorted list of runs, which is compact
+ * for the contiguous ranges produced by drag selection, or a plain bitmap once a chunk has
+ * too many runs, which turns back into runs once most of them are merged. Looking up the chunk
+ * is O(1), and {@link #contains(int)} is O(1) in a bitmap container or O(log runs) in a run
+ * container. {@link #snapshot()} shares the containers, each one is copied on the first write
+ * to either bitmap, so it costs O(chunks) instead of O(selected items).
+ * <p>
+ * Negative positions, e.g. {@link SelectionRecorder#NO_POSITION}, are ignored. This class is
+ * not thread safe.
+ */
+public final class SelectionBitmap {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private static final Container[] EMPTY = new Container[0];
+    private static final int MAGIC = 0x444D5342; // "DMSB"
+    private static final int VERSION = 1;
+
+    private Container[] mContainers = EMPTY;
+    /**
+     * Reused by {@link #forEachRun(int, int, RunVisitor)} unless it's called while visiting.
+     */
+    private final RunMerger mMerger = new RunMerger();
+    private final RunCounter mRunCounter = new RunCounter();
+
+    /**
+     * Receives the runs of selected positions in ascending order.
+     */
+    public interface RunVisitor {
+        void onRun(int fromInclusive, int toInclusive);
+    }
+
+    public SelectionBitmap() {
+    }
+
+    private SelectionBitmap(Container[] containers) {
+        mContainers = containers;
+    }
+
+    public boolean contains(int position) {
+        if (position < 0) {
+            return false;
+        }
+        final int key = position >>> CHUNK_BITS;
+        if (key >= mContainers.length) {
+            return false;
+        }
+        final Container container = mContainers[key];
+        return container != null && container.contains(position & CHUNK_MASK);
+    }
+
+    public void add(int position) {
+        setRange(position, position, true);
+    }
+
+    public void remove(int position) {
+        setRange(position, position, false);
+    }
+
+    public void set(int position, boolean selected) {
+        setRange(position, position, selected);
+    }
+
+    /**
+     * Select or unselect all positions in the range.
+     *
+     * @param fromInclusive the first position of the range.
+     * @param toInclusive   the last position of the range.
+     * @param selected      true to select the range, false to unselect it.
+     */
+    public void setRange(int fromInclusive, int toInclusive, boolean selected) {
+        if (fromInclusive < 0) {
+            fromInclusive = 0;
+        }
+        if (toInclusive < fromInclusive) {
+            return;
+        }
+        final int fromKey = fromInclusive >>> CHUNK_BITS;
+        final int toKey = toInclusive >>> CHUNK_BITS;
+        if (selected) {
+            ensureKey(toKey);
+        } else if (fromKey >= mContainers.length) {
+            return;
+        }
+        final int lastKey = Math.min(toKey, mContainers.length - 1);
+        for (int key = fromKey; key <= lastKey; key++) {
+            final int low = key == fromKey ? fromInclusive & CHUNK_MASK : 0;
+            final int high = key == toKey ? toInclusive & CHUNK_MASK : CHUNK_MASK;
+            Container container = mContainers[key];
+            if (container == null) {
+                if (!selected) {
+                    continue;
+                }
+                container = new RunContainer();
+            } else if (container.mShared) {
+                container = container.copy();
+            }
+            container = container.setRange(low, high, selected);
+            mContainers[key] = container.isEmpty() ? null : container;
+        }
+    }
+
+    public void clear() {
+        mContainers = EMPTY;
+    }
+
+    public boolean isEmpty() {
+        for (Container container : mContainers) {
+            if (container != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of selected positions.
+     */
+    public long cardinality() {
+        long cardinality = 0;
+        for (Container container : mContainers) {
+            if (container != null) {
+                cardinality += container.cardinality();
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * @return A copy of this bitmap. The containers are shared until either bitmap writes to
+     * them, so the cost is proportional to the number of chunks.
+     */
+    public SelectionBitmap snapshot() {
+        final Container[] containers = new Container[mContainers.length];
+        for (int i = 0; i < containers.length; i++) {
+            if (mContainers[i] != null) {
+                mContainers[i].mShared = true;
+                containers[i] = mContainers[i];
+            }
+        }
+        return new SelectionBitmap(containers);
+    }
+
+    /**
+     * Visit the runs of selected positions in ascending order. Runs which are split by the
+     * chunk boundary are merged.
+     */
+    public void forEachRun(RunVisitor visitor) {
+        forEachRun(0, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visit the runs of selected positions within the range in ascending order, the runs are
+     * clipped to the range.
+     *
+     * @param fromInclusive the first position of the range.
+     * @param toInclusive   the last position of the range.
+     * @param visitor       receives the runs.
+     */
+    public void forEachRun(int fromInclusive, int toInclusive, RunVisitor visitor) {
+        if (fromInclusive < 0) {
+            fromInclusive = 0;
+        }
+        if (toInclusive < fromInclusive) {
+            return;
+        }
+        final int fromKey = fromInclusive >>> CHUNK_BITS;
+        final int toKey = toInclusive >>> CHUNK_BITS;
+        final int lastKey = Math.min(toKey, mContainers.length - 1);
+        // A visitor may visit this bitmap again, it takes a new merger then.
+        final RunMerger merger = mMerger.mVisitor == null ? mMerger : new RunMerger();
+        merger.mVisitor = visitor;
+        for (int key = fromKey; key <= lastKey; key++) {
+            if (mContainers[key] != null) {
+                final int low = key == fromKey ? fromInclusive & CHUNK_MASK : 0;
+                final int high = key == toKey ? toInclusive & CHUNK_MASK : CHUNK_MASK;
+                mContainers[key].forEachRun(key << CHUNK_BITS, low, high, merger);
+            }
+        }
+        merger.flush();
+        merger.mVisitor = null;
+    }
+
+    /**
+     * Shift the positions after items are inserted, the inserted positions are not selected.
+     * It's O(runs) whatever the number of positions.
+     *
+     * @param positionStart the position of the first inserted item.
+     * @param itemCount     the number of inserted items.
+     */
+    public void insertRange(final int positionStart, final int itemCount) {
+        if (positionStart < 0 || itemCount <= 0) {
+            return;
+        }
+        final SelectionBitmap shifted = new SelectionBitmap();
+        forEachRun(new RunVisitor() {
+            @Override
+            public void onRun(int fromInclusive, int toInclusive) {
+                if (toInclusive < positionStart) {
+                    shifted.setRange(fromInclusive, toInclusive, true);
+                } else if (fromInclusive >= positionStart) {
+                    shifted.setRange(fromInclusive + itemCount, toInclusive + itemCount, true);
+                } else {
+                    shifted.setRange(fromInclusive, positionStart - 1, true);
+                    shifted.setRange(positionStart + itemCount, toInclusive + itemCount, true);
+                }
+            }
+        });
+        mContainers = shifted.mContainers;
+    }
+
+    /**
+     * Drop the removed positions and shift the positions after them. It's O(runs) whatever
+     * the number of positions.
+     *
+     * @param positionStart the position of the first removed item.
+     * @param itemCount     the number of removed items.
+     */
+    public void removeRange(final int positionStart, final int itemCount) {
+        if (positionStart < 0 || itemCount <= 0) {
+            return;
+        }
+        final int removedEnd = positionStart + itemCount;
+        final SelectionBitmap shifted = new SelectionBitmap();
+        forEachRun(new RunVisitor() {
+            @Override
+            public void onRun(int fromInclusive, int toInclusive) {
+                if (fromInclusive < positionStart) {
+                    shifted.setRange(fromInclusive, Math.min(toInclusive, positionStart - 1),
+                            true);
+                }
+                if (toInclusive >= removedEnd) {
+                    shifted.setRange(Math.max(fromInclusive, removedEnd) - itemCount,
+                            toInclusive - itemCount, true);
+                }
+            }
+        });
+        mContainers = shifted.mContainers;
+    }
+
+    /**
+     * @return The number of runs of selected positions.
+     */
+    public int runCount() {
+        mRunCounter.mCount = 0;
+        forEachRun(mRunCounter);
+        return mRunCounter.mCount;
+    }
+
+    /**
+     * Encodes the runs of selected positions, each one as the gap since the previous run and
+     * its length in varints. A selection made of a few ranges takes a few bytes whatever the
+     * number of positions.
+     *
+     * @return The encoded selection, which can be decoded by {@link #fromByteArray(byte[])}.
+     */
+    public byte[] toByteArray() {
+        final int runCount = runCount();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(8 + runCount * 4);
+        Varints.writeUnsigned(out, MAGIC);
+        Varints.writeUnsigned(out, VERSION);
+        Varints.writeUnsigned(out, runCount);
+        forEachRun(new RunVisitor() {
+            private int mLastEnd = -1;
+
+            @Override
+            public void onRun(int fromInclusive, int toInclusive) {
+                Varints.writeUnsigned(out, fromInclusive - mLastEnd - 1);
+                Varints.writeUnsigned(out, toInclusive - fromInclusive);
+                mLastEnd = toInclusive;
+            }
+        });
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a selection encoded by {@link #toByteArray()}, the cost is proportional to the
+     * number of runs.
+     *
+     * @param bytes The encoded selection.
+     * @return A new bitmap of the selection.
+     * @throws IllegalArgumentException if the bytes are not a valid selection.
+     */
+    public static SelectionBitmap fromByteArray(byte[] bytes) {
+        final Varints.Reader reader = new Varints.Reader(bytes);
+        if (reader.readUnsigned() != MAGIC || reader.readUnsigned() != VERSION) {
+            throw new IllegalArgumentException("Not an encoded selection");
+        }
+        final long runCount = reader.readUnsigned();
+        final SelectionBitmap bitmap = new SelectionBitmap();
+        long lastEnd = -1;
+        for (long i = 0; i < runCount; i++) {
+            final long from = lastEnd + 1 + reader.readUnsigned();
+            final long to = from + reader.readUnsigned();
+            if (to > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Position out of range: " + to);
+            }
+            // Runs are ascending, so each one is appended to the last container.
+            bitmap.setRange((int) from, (int) to, true);
+            lastEnd = to;
+        }
+        return bitmap;
+    }
+
+    private void ensureKey(int key) {
+        if (key < mContainers.length) {
+            return;
+        }
+        final Container[] containers = new Container[Math.max(key + 1, mContainers.length * 2)];
+        System.arraycopy(mContainers, 0, containers, 0, mContainers.length);
+        mContainers = containers;
+    }
+
+    private static class RunCounter implements RunVisitor {
+        private int mCount;
+
+        @Override
+        public void onRun(int fromInclusive, int toInclusive) {
+            mCount++;
+        }
+    }
+
+    private static class RunMerger implements RunVisitor {
+        private RunVisitor mVisitor;
+        private int mStart = -1;
+        private int mEnd = -1;
+
+        @Override
+        public void onRun(int fromInclusive, int toInclusive) {
+            if (mStart >= 0 && fromInclusive == mEnd + 1) {
+                mEnd = toInclusive;
+                return;
+            }
+            flush();
+            mStart = fromInclusive;
+            mEnd = toInclusive;
+        }
+
+        void flush() {
+            if (mStart >= 0) {
+                mVisitor.onRun(mStart, mEnd);
+                mStart = -1;
+                mEnd = -1;
+            }
+        }
+    }
+
+    private abstract static class Container {
+        /**
+         * Whether the container is shared by snapshots, it's copied before written then.
+         */
+        boolean mShared;
+
+        abstract boolean contains(int low);
+
+        /**
+         * @return The container holding the result, which may be a converted one.
+         */
+        abstract Container setRange(int lowFrom, int lowTo, boolean selected);
+
+        abstract int cardinality();
+
+        abstract boolean isEmpty();
+
+        abstract Container copy();
+
+        abstract void forEachRun(int base, int lowFrom, int lowTo, RunVisitor visitor);
+    }
+
+    /**
+     * Sorted, disjoint and non-adjacent runs of selected positions.
+     */
+    private static final class RunContainer extends Container {
+        /**
+         * Beyond this, a bitmap container takes less memory.
+         */
+        private static final int MAX_RUNS = 1024;
+        /**
+         * Below this, a bitmap container turns back into runs. It's lower than
+         * {@link #MAX_RUNS} so a container doesn't convert back and forth.
+         */
+        private static final int MIN_RUNS = MAX_RUNS / 2;
+
+        private int[] mStarts;
+        private int[] mEnds;
+        private int mRunCount;
+
+        RunContainer() {
+            this(new int[4], new int[4], 0);
+        }
+
+        private RunContainer(int[] starts, int[] ends, int runCount) {
+            mStarts = starts;
+            mEnds = ends;
+            mRunCount = runCount;
+        }
+
+        @Override
+        boolean contains(int low) {
+            final int index = lastRunStartingAtOrBefore(low);
+            return index >= 0 && mEnds[index] >= low;
+        }
+
+        @Override
+        Container setRange(int lowFrom, int lowTo, boolean selected) {
+            if (selected) {
+                // Merge with the runs which overlap or are adjacent to the range.
+                final int first = firstRunEndingAtOrAfter(lowFrom - 1);
+                final int last = lastRunStartingAtOrBefore(lowTo + 1);
+                if (first > last) {
+                    replace(first, first - 1, lowFrom, lowTo, -1, -1);
+                } else {
+                    replace(first, last, Math.min(lowFrom, mStarts[first]),
+                            Math.max(lowTo, mEnds[last]), -1, -1);
+                }
+            } else {
+                final int first = firstRunEndingAtOrAfter(lowFrom);
+                final int last = lastRunStartingAtOrBefore(lowTo);
+                if (first > last) {
+                    return this;
+                }
+                final int leftStart = mStarts[first] < lowFrom ? mStarts[first] : -1;
+                final int rightEnd = mEnds[last] > lowTo ? mEnds[last] : -1;
+                if (leftStart >= 0 && rightEnd >= 0) {
+                    replace(first, last, leftStart, lowFrom - 1, lowTo + 1, rightEnd);
+                } else if (leftStart >= 0) {
+                    replace(first, last, leftStart, lowFrom - 1, -1, -1);
+                } else if (rightEnd >= 0) {
+                    replace(first, last, lowTo + 1, rightEnd, -1, -1);
+                } else {
+                    replace(first, last, -1, -1, -1, -1);
+                }
+            }
+            if (mRunCount > MAX_RUNS) {
+                return toBitmap();
+            }
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            int cardinality = 0;
+            for (int i = 0; i < mRunCount; i++) {
+                cardinality += mEnds[i] - mStarts[i] + 1;
+            }
+            return cardinality;
+        }
+
+        @Override
+        boolean isEmpty() {
+            return mRunCount == 0;
+        }
+
+        @Override
+        Container copy() {
+            final int capacity = Math.max(4, mRunCount);
+            final int[] starts = new int[capacity];
+            final int[] ends = new int[capacity];
+            System.arraycopy(mStarts, 0, starts, 0, mRunCount);
+            System.arraycopy(mEnds, 0, ends, 0, mRunCount);
+            return new RunContainer(starts, ends, mRunCount);
+        }
+
+        @Override
+        void forEachRun(int base, int lowFrom, int lowTo, RunVisitor visitor) {
+            for (int i = firstRunEndingAtOrAfter(lowFrom); i < mRunCount && mStarts[i] <= lowTo;
+                 i++) {
+                visitor.onRun(base + Math.max(mStarts[i], lowFrom),
+                        base + Math.min(mEnds[i], lowTo));
+            }
+        }
+
+        /**
+         * Replace the runs in [first, last] with up to two new runs, a negative start means
+         * no run.
+         */
+        private void replace(int first, int last, int start1, int end1, int start2, int end2) {
+            final int newCount = (start1 >= 0 ? 1 : 0) + (start2 >= 0 ? 1 : 0);
+            final int removedCount = last - first + 1;
+            final int runCount = mRunCount - removedCount + newCount;
+            if (runCount > mStarts.length) {
+                final int capacity = Math.max(runCount, mStarts.length * 2);
+                final int[] starts = new int[capacity];
+                final int[] ends = new int[capacity];
+                System.arraycopy(mStarts, 0, starts, 0, mRunCount);
+                System.arraycopy(mEnds, 0, ends, 0, mRunCount);
+                mStarts = starts;
+                mEnds = ends;
+            }
+            final int tail = mRunCount - last - 1;
+            if (tail > 0 && newCount != removedCount) {
+                System.arraycopy(mStarts, last + 1, mStarts, first + newCount, tail);
+                System.arraycopy(mEnds, last + 1, mEnds, first + newCount, tail);
+            }
+            int index = first;
+            if (start1 >= 0) {
+                mStarts[index] = start1;
+                mEnds[index] = end1;
+                index++;
+            }
+            if (start2 >= 0) {
+                mStarts[index] = start2;
+                mEnds[index] = end2;
+            }
+            mRunCount = runCount;
+        }
+
+        /**
+         * @return The smallest index whose run ends at or after the value, or the run count.
+         */
+        private int firstRunEndingAtOrAfter(int value) {
+            int low = 0;
+            int high = mRunCount - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (mEnds[mid] >= value) {
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return The largest index whose run starts at or before the value, or -1.
+         */
+        private int lastRunStartingAtOrBefore(int value) {
+            int low = 0;
+            int high = mRunCount - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (mStarts[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+
+        private BitmapContainer toBitmap() {
+            final BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < mRunCount; i++) {
+                bitmap.fill(mStarts[i], mEnds[i], true);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * One bit for each position of the chunk.
+     */
+    private static final class BitmapContainer extends Container {
+        private static final int WORD_COUNT = (1 << CHUNK_BITS) / Long.SIZE;
+
+        private final long[] mWords;
+        private int mCardinality;
+        /**
+         * The number of runs, kept up to date by each write so the check for converting back
+         * to runs doesn't have to scan the whole chunk.
+         */
+        private int mRunCount;
+
+        BitmapContainer() {
+            this(new long[WORD_COUNT], 0, 0);
+        }
+
+        private BitmapContainer(long[] words, int cardinality, int runCount) {
+            mWords = words;
+            mCardinality = cardinality;
+            mRunCount = runCount;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (mWords[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container setRange(int lowFrom, int lowTo, boolean selected) {
+            fill(lowFrom, lowTo, selected);
+            if (mRunCount < RunContainer.MIN_RUNS) {
+                return toRuns();
+            }
+            return this;
+        }
+
+        private void fill(int lowFrom, int lowTo, boolean selected) {
+            final int firstWord = lowFrom >>> 6;
+            final int lastWord = lowTo >>> 6;
+            // A write can only move the run starts in the changed words and the word after them.
+            final int lastAffected = Math.min(lastWord + 1, WORD_COUNT - 1);
+            mRunCount -= runCount(firstWord, lastAffected);
+            for (int i = firstWord; i <= lastWord; i++) {
+                long mask = -1L;
+                if (i == firstWord) {
+                    mask &= -1L << lowFrom;
+                }
+                if (i == lastWord) {
+                    mask &= -1L >>> (63 - (lowTo & 63));
+                }
+                final long word = mWords[i];
+                final long newWord = selected ? word | mask : word & ~mask;
+                mCardinality += Long.bitCount(newWord) - Long.bitCount(word);
+                mWords[i] = newWord;
+            }
+            mRunCount += runCount(firstWord, lastAffected);
+        }
+
+        /**
+         * @return The number of runs starting in the given words, counted by the bits which
+         * start a run.
+         */
+        private int runCount(int firstWord, int lastWord) {
+            int runCount = 0;
+            long carry = firstWord == 0 ? 0 : mWords[firstWord - 1] >>> 63;
+            for (int i = firstWord; i <= lastWord; i++) {
+                final long word = mWords[i];
+                runCount += Long.bitCount(word & ~((word << 1) | carry));
+                carry = word >>> 63;
+            }
+            return runCount;
+        }
+
+        private RunContainer toRuns() {
+            final RunContainer runs = new RunContainer();
+            forEachRun(0, 0, CHUNK_MASK, new RunVisitor() {
+                @Override
+                public void onRun(int fromInclusive, int toInclusive) {
+                    runs.setRange(fromInclusive, toInclusive, true);
+                }
+            });
+            return runs;
+        }
+
+        @Override
+        int cardinality() {
+            return mCardinality;
+        }
+
+        @Override
+        boolean isEmpty() {
+            return mCardinality == 0;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(mWords.clone(), mCardinality, mRunCount);
+        }
+
+        @Override
+        void forEachRun(int base, int lowFrom, int lowTo, RunVisitor visitor) {
+            int runStart = -1;
+            final int firstWord = lowFrom >>> 6;
+            final int lastWord = lowTo >>> 6;
+            for (int i = firstWord; i <= lastWord; i++) {
+                long word = mWords[i];
+                if (i == firstWord) {
+                    word &= -1L << lowFrom;
+                }
+                if (i == lastWord) {
+                    word &= -1L >>> (63 - (lowTo & 63));
+                }
+                int bit = 0;
+                while (bit < Long.SIZE) {
+                    // Look for the next set bit to start a run, or the next clear bit to end it.
+                    final long rest = (runStart < 0 ? word : ~word) & (-1L << bit);
+                    if (rest == 0) {
+                        break;
+                    }
+                    bit = Long.numberOfTrailingZeros(rest);
+                    if (runStart < 0) {
+                        runStart = (i << 6) + bit;
+                    } else {
+                        visitor.onRun(base + runStart, base + (i << 6) + bit - 1);
+                        runStart = -1;
+                    }
+                }
+            }
+            if (runStart >= 0) {
+                visitor.onRun(base + runStart, base + lowTo);
+            }
+        }
+    }
+}
@@ -0,0 +1,635 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+/**
+ * The platform independent part of the drag selection: the selection state machine and the
+ * selected range. The host feeds it with the item positions under the touch point, and it
+ * reports the selection changes to a {@link SelectionListener}.
+ */
+public class SelectionEngine {
+    public static final int NO_POSITION = SelectionRecorder.NO_POSITION;
+
+    /*
+     *                       !autoChangeState           +-------------------+  inactiveSlideSelect()
+     *           +------------------------------------> |                   | <--------------------+
+     *           |                                      |      Normal       |                      |
+     *           |        activeDragSelect(position)    |                   | activeSlideSelect()  |
+     *           |      +------------------------------ |                   | ----------+          |
+     *           |      v                               +-------------------+           v          |
+     *  +-------------------+               autoChangeState                   +-----------------------+
+     *  | Drag From Normal  | ----------------------------------------------> |                       |
+     *  +-------------------+                                                 |                       |
+     *  |                   |                                                 |                       |
+     *  |                   | activeDragSelect(position) && allowDragInSlide  |        Slide          |
+     *  |                   | <---------------------------------------------- |                       |
+     *  |  Drag From Slide  |                                                 |                       |
+     *  |                   |                                                 |                       |
+     *  |                   | ----------------------------------------------> |                       |
+     *  +-------------------+                                                 +-----------------------+
+     */
+    public static final int SELECT_STATE_NORMAL = 0x00;
+    public static final int SELECT_STATE_SLIDE = 0x01;
+    public static final int SELECT_STATE_DRAG_FROM_NORMAL = 0x10;
+    public static final int SELECT_STATE_DRAG_FROM_SLIDE = 0x11;
+
+    private final SelectionListener mClientListener;
+    /**
+     * The client listener, wrapped to record the callbacks when tracing.
+     */
+    private SelectionListener mListener;
+    private GestureTrace mTrace;
+    private final SelectionRecorder mSelectionRecorder = new SelectionRecorder();
+    private final SelectionRecorder.RangeConsumer mRangeConsumer =
+            new SelectionRecorder.RangeConsumer() {
+                @Override
+                public void onRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+                    mFlushStart = Math.min(mFlushStart, fromInclusive);
+                    mFlushEnd = Math.max(mFlushEnd, toInclusive);
+                    mDispatchedPositionCount += toInclusive - fromInclusive + 1;
+                    mListener.onSelectRangeChange(fromInclusive, toInclusive, isSelected);
+                }
+            };
+    private StateListener mStateListener;
+    /**
+     * Whether should auto enter slide mode after drag select finished.
+     */
+    private boolean mShouldAutoChangeState;
+    /**
+     * Whether can drag selection in slide select mode.
+     */
+    private boolean mIsAllowDragInSlideState;
+    /**
+     * The current mode of selection.
+     */
+    private int mSelectState = SELECT_STATE_NORMAL;
+    private int mSlideStateStartPosition = NO_POSITION;
+    private boolean mHaveCalledSelectStart = false;
+    /**
+     * Whether to keep the changes of the selected range until {@link #flushPendingUpdates()}.
+     */
+    private boolean mCoalesceUpdates;
+    private boolean mHasPendingUpdates;
+    /**
+     * Span of the ranges dispatched in the current flush.
+     */
+    private int mFlushStart;
+    private int mFlushEnd;
+    /**
+     * Number of positions dispatched as range changes since the engine is created.
+     */
+    private long mDispatchedPositionCount;
+
+    /**
+     * Receives the state changes of the engine.
+     */
+    public interface StateListener {
+        /**
+         * Called when the select state changed.
+         */
+        void onSelectStateChange(int before, int after);
+
+        /**
+         * Called when a selection is finished and the selected range is cleared.
+         */
+        void onSelectFinished();
+    }
+
+    public SelectionEngine(SelectionListener listener) {
+        mClientListener = listener;
+        mListener = listener;
+    }
+
+    /**
+     * Sets a trace to record the calls into the engine and the callbacks it makes, which can
+     * be replayed by {@link TraceReplayer}. The current configuration is recorded first.
+     *
+     * @param trace The trace to record into, or null to stop recording.
+     */
+    public void setTrace(GestureTrace trace) {
+        mTrace = trace;
+        mListener = trace == null ? mClientListener : new TracingListener(mClientListener, trace);
+        if (trace != null) {
+            trace.record(GestureTrace.TYPE_SET_AUTO_ENTER_SLIDE, mShouldAutoChangeState ? 1 : 0);
+            trace.record(GestureTrace.TYPE_SET_ALLOW_DRAG_IN_SLIDE,
+                    mIsAllowDragInSlideState ? 1 : 0);
+            trace.record(GestureTrace.TYPE_SET_COALESCE, mCoalesceUpdates ? 1 : 0);
+        }
+    }
+
+    public GestureTrace getTrace() {
+        return mTrace;
+    }
+
+    public void setStateListener(StateListener stateListener) {
+        mStateListener = stateListener;
+    }
+
+    /**
+     * Sets whether should auto enter slide mode after drag select finished.
+     */
+    public void setAutoEnterSlideState(boolean autoEnterSlideState) {
+        trace(GestureTrace.TYPE_SET_AUTO_ENTER_SLIDE, autoEnterSlideState ? 1 : 0);
+        mShouldAutoChangeState = autoEnterSlideState;
+    }
+
+    /**
+     * @return Whether to enter the slide mode after a drag select started from the normal
+     * mode is finished.
+     */
+    public boolean isAutoEnterSlideState() {
+        return mShouldAutoChangeState;
+    }
+
+    /**
+     * Sets whether can drag selection in slide select mode.
+     */
+    public void setAllowDragInSlideState(boolean allowDragInSlideState) {
+        trace(GestureTrace.TYPE_SET_ALLOW_DRAG_IN_SLIDE, allowDragInSlideState ? 1 : 0);
+        mIsAllowDragInSlideState = allowDragInSlideState;
+    }
+
+    /**
+     * Sets whether to coalesce the changes of the selected range. If true,
+     * {@link #updateSelectedRange(int)} only records the new end position, and the net change
+     * is dispatched by {@link #flushPendingUpdates()}, which the host calls once per frame.
+     */
+    public void setCoalesceUpdates(boolean coalesceUpdates) {
+        trace(GestureTrace.TYPE_SET_COALESCE, coalesceUpdates ? 1 : 0);
+        mCoalesceUpdates = coalesceUpdates;
+        if (!coalesceUpdates) {
+            dispatchPendingUpdates();
+        }
+    }
+
+    public boolean isCoalesceUpdates() {
+        return mCoalesceUpdates;
+    }
+
+    /**
+     * Sets the box mode of the selection, see
+     * {@link SelectionRecorder#setBoxSelection(int, int)}. It's applied to the selections
+     * started after this call.
+     *
+     * @param spanCount the number of columns of the grid, 0 to select a range of positions.
+     * @param itemCount the number of items.
+     */
+    public void setBoxSelection(int spanCount, int itemCount) {
+        if (mSelectionRecorder.startPosition() != NO_POSITION) {
+            // Keep the mode of the current selection.
+            return;
+        }
+        if (mTrace != null) {
+            mTrace.record(GestureTrace.TYPE_SET_BOX, spanCount, itemCount);
+        }
+        mSelectionRecorder.setBoxSelection(spanCount, itemCount);
+    }
+
+    /**
+     * Activate the slide selection mode.
+     */
+    public void activeSlideSelect() {
+        trace(GestureTrace.TYPE_ACTIVE_SLIDE);
+        changeSelectState(SELECT_STATE_SLIDE);
+    }
+
+    /**
+     * Activate the drag selection mode with selected item position.
+     *
+     * @param position Indicates the position of selected item.
+     */
+    public void activeDragSelect(int position) {
+        trace(GestureTrace.TYPE_ACTIVE_DRAG, position);
+        if (!mHaveCalledSelectStart) {
+            mListener.onSelectStart(position);
+            mHaveCalledSelectStart = true;
+        }
+        if (mSelectState == SELECT_STATE_SLIDE) {
+            if (mIsAllowDragInSlideState && selectFirstItem(position)) {
+                changeSelectState(SELECT_STATE_DRAG_FROM_SLIDE);
+            }
+        } else if (mSelectState == SELECT_STATE_NORMAL) {
+            if (selectFirstItem(position)) {
+                changeSelectState(SELECT_STATE_DRAG_FROM_NORMAL);
+            }
+        } else {
+            Logger.e("activeSelect in unexpected state: {}", stateName(mSelectState));
+        }
+    }
+
+    /**
+     * Exit the selection mode.
+     */
+    public void inactiveSelect() {
+        trace(GestureTrace.TYPE_INACTIVE);
+        if (isSelectActivated()) {
+            selectFinished(mSelectionRecorder.endPosition());
+        } else {
+            selectFinished(NO_POSITION);
+        }
+        changeSelectState(SELECT_STATE_NORMAL);
+    }
+
+    public boolean isSelectActivated() {
+        return (mSelectState != SELECT_STATE_NORMAL);
+    }
+
+    public boolean isSlideState() {
+        return mSelectState == SELECT_STATE_SLIDE;
+    }
+
+    public boolean isDragState() {
+        return mSelectState == SELECT_STATE_DRAG_FROM_NORMAL
+                || mSelectState == SELECT_STATE_DRAG_FROM_SLIDE;
+    }
+
+    public int getSelectState() {
+        return mSelectState;
+    }
+
+    /**
+     * Called when the finger is down in the slide area in slide state. The selection start is
+     * called before moving, but the first item is selected on the first move.
+     *
+     * @param position The position of the item under the finger.
+     * @return Whether a slide selection is started.
+     */
+    public boolean startSlideSelect(int position) {
+        trace(GestureTrace.TYPE_START_SLIDE, position);
+        mSlideStateStartPosition = position;
+        if (mSlideStateStartPosition != NO_POSITION) {
+            mListener.onSelectStart(mSlideStateStartPosition);
+            mHaveCalledSelectStart = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Select the first item of a slide selection if it hasn't been selected.
+     *
+     * @return Whether the first item is selected by this call.
+     */
+    public boolean commitSlideSelect() {
+        trace(GestureTrace.TYPE_COMMIT_SLIDE);
+        if (mSlideStateStartPosition == NO_POSITION) {
+            return false;
+        }
+        selectFirstItem(mSlideStateStartPosition);
+        // selection is triggered
+        mSlideStateStartPosition = NO_POSITION;
+        return true;
+    }
+
+    /**
+     * Called when the gesture ends before the events are intercepted.
+     */
+    public void onGestureEndBeforeIntercept() {
+        trace(GestureTrace.TYPE_GESTURE_END_BEFORE_INTERCEPT);
+        if (mSlideStateStartPosition != NO_POSITION) {
+            selectFinished(mSlideStateStartPosition);
+            mSlideStateStartPosition = NO_POSITION;
+        }
+        // selection has triggered
+        if (mSelectionRecorder.startPosition() != NO_POSITION) {
+            selectFinished(mSelectionRecorder.endPosition());
+        }
+    }
+
+    /**
+     * Called when the intercepted gesture ends.
+     */
+    public void onGestureEnd() {
+        trace(GestureTrace.TYPE_GESTURE_END);
+        commitSlideSelect();
+        selectFinished(mSelectionRecorder.endPosition());
+    }
+
+    /**
+     * Update the selected range to end at the position.
+     *
+     * @param position The position of the item under the touch point.
+     * @return Whether the selected range changed.
+     */
+    public boolean updateSelectedRange(int position) {
+        trace(GestureTrace.TYPE_UPDATE, position);
+        if (position != NO_POSITION && mSelectionRecorder.selectUpdate(position)) {
+            mHasPendingUpdates = true;
+            if (!mCoalesceUpdates) {
+                dispatchPendingUpdates();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether there are changes of the selected range waiting to be flushed.
+     */
+    public boolean hasPendingUpdates() {
+        return mHasPendingUpdates;
+    }
+
+    /**
+     * Dispatch the net change of the selected range since the last flush, followed by
+     * {@link SelectionListener#onSelectionFlush(int, int)}. Ranges which were selected and
+     * unselected again in between are not dispatched at all.
+     */
+    public void flushPendingUpdates() {
+        if (!mHasPendingUpdates) {
+            return;
+        }
+        trace(GestureTrace.TYPE_FLUSH);
+        dispatchPendingUpdates();
+    }
+
+    private void dispatchPendingUpdates() {
+        if (!mHasPendingUpdates) {
+            return;
+        }
+        mHasPendingUpdates = false;
+        mFlushStart = Integer.MAX_VALUE;
+        mFlushEnd = Integer.MIN_VALUE;
+        mSelectionRecorder.dispatchUpdate(mRangeConsumer);
+        if (mFlushStart <= mFlushEnd) {
+            mListener.onSelectionFlush(mFlushStart, mFlushEnd);
+        }
+    }
+
+    /**
+     * @return The number of positions dispatched as range changes so far, the difference
+     * of two calls tells how many positions changed in between.
+     */
+    public long getDispatchedPositionCount() {
+        return mDispatchedPositionCount;
+    }
+
+    /**
+     * Remap the selection after items are inserted, see
+     * {@link SelectionRecorder#onItemRangeInserted(int, int)}. Items inserted inside the
+     * selected range are selected, followed by {@link SelectionListener#onSelectionFlush}.
+     *
+     * @param positionStart the position of the first inserted item.
+     * @param itemCount     the number of inserted items.
+     */
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        if (mTrace != null) {
+            mTrace.record(GestureTrace.TYPE_ITEMS_INSERTED, positionStart, itemCount);
+        }
+        if (mSlideStateStartPosition >= positionStart) {
+            mSlideStateStartPosition += itemCount;
+        }
+        if (mSelectionRecorder.onItemRangeInserted(positionStart, itemCount)) {
+            dispatchInsertedRange(positionStart, itemCount);
+        }
+    }
+
+    /**
+     * Remap the selection after items are removed, see
+     * {@link SelectionRecorder#onItemRangeRemoved(int, int)}.
+     *
+     * @param positionStart the position of the first removed item before removal.
+     * @param itemCount     the number of removed items.
+     */
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        if (mTrace != null) {
+            mTrace.record(GestureTrace.TYPE_ITEMS_REMOVED, positionStart, itemCount);
+        }
+        mSlideStateStartPosition = removePosition(mSlideStateStartPosition, positionStart,
+                itemCount);
+        mSelectionRecorder.onItemRangeRemoved(positionStart, itemCount);
+    }
+
+    /**
+     * Remap the selection after items are moved, see
+     * {@link SelectionRecorder#onItemRangeMoved(int, int, int)}. Items moved into the
+     * selected range are selected, items moved out of it keep their state.
+     *
+     * @param fromPosition the position of the first moved item before moving.
+     * @param toPosition   the position of the first moved item after moving.
+     * @param itemCount    the number of moved items.
+     */
+    public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        if (mTrace != null) {
+            mTrace.record(GestureTrace.TYPE_ITEMS_MOVED, fromPosition, toPosition, itemCount);
+        }
+        if (mSlideStateStartPosition >= fromPosition
+                && mSlideStateStartPosition < fromPosition + itemCount) {
+            // The item under the finger goes with the moved items.
+            mSlideStateStartPosition += toPosition - fromPosition;
+        } else {
+            mSlideStateStartPosition = removePosition(mSlideStateStartPosition, fromPosition,
+                    itemCount);
+            if (mSlideStateStartPosition >= toPosition) {
+                mSlideStateStartPosition += itemCount;
+            }
+        }
+        if (mSelectionRecorder.onItemRangeMoved(fromPosition, toPosition, itemCount)) {
+            dispatchInsertedRange(toPosition, itemCount);
+        }
+    }
+
+    /**
+     * Move the selection to the new positions of its first item and of the dispatched end,
+     * e.g. looked up by stable ids after the data set changed without finer notifications.
+     * If the range between them covers more items than before, the whole range is selected
+     * again since the new items can be anywhere in it.
+     *
+     * @param start the new position of the first selected item.
+     * @param end   the new position of the dispatched end, or {@link #NO_POSITION} if it's
+     *              gone.
+     */
+    public void relocateSelection(int start, int end) {
+        if (mTrace != null) {
+            mTrace.record(GestureTrace.TYPE_RELOCATE, start, end);
+        }
+        final int lastStart = mSelectionRecorder.startPosition();
+        if (lastStart == NO_POSITION || start == NO_POSITION) {
+            return;
+        }
+        final int lastEnd = mSelectionRecorder.dispatchedEndPosition();
+        final int lastLength = lastEnd == NO_POSITION ? 0 : Math.abs(lastEnd - lastStart) + 1;
+        mSelectionRecorder.relocate(start, end);
+        mHasPendingUpdates = false;
+        final int newEnd = mSelectionRecorder.dispatchedEndPosition();
+        if (Math.abs(newEnd - start) + 1 > lastLength) {
+            final int from = Math.min(start, newEnd);
+            dispatchInsertedRange(from, Math.max(start, newEnd) - from + 1);
+        }
+    }
+
+    /**
+     * @return The new position of an item after items are removed, or the position of the
+     * item before them if it's removed.
+     */
+    private static int removePosition(int position, int positionStart, int itemCount) {
+        if (position == NO_POSITION || position < positionStart) {
+            return position;
+        }
+        if (position < positionStart + itemCount) {
+            // Continue from the item before the removed ones.
+            return Math.max(0, positionStart - 1);
+        }
+        return position - itemCount;
+    }
+
+    private void dispatchInsertedRange(int positionStart, int itemCount) {
+        final int toInclusive = positionStart + itemCount - 1;
+        mFlushStart = positionStart;
+        mFlushEnd = toInclusive;
+        mRangeConsumer.onRangeChange(positionStart, toInclusive, true);
+        mListener.onSelectionFlush(positionStart, toInclusive);
+    }
+
+    public int startPosition() {
+        return mSelectionRecorder.startPosition();
+    }
+
+    public int endPosition() {
+        return mSelectionRecorder.endPosition();
+    }
+
+    /**
+     * @return The end of the range dispatched to the listener, see
+     * {@link SelectionRecorder#dispatchedEndPosition()}.
+     */
+    public int dispatchedEndPosition() {
+        return mSelectionRecorder.dispatchedEndPosition();
+    }
+
+    private boolean selectFirstItem(int position) {
+        boolean selectFirstItemSucceed = mListener.onSelectChange(position, true);
+        // The drag select feature is only available if the first item is available for selection
+        if (selectFirstItemSucceed) {
+            mSelectionRecorder.selectFirst(position);
+        }
+        return selectFirstItemSucceed;
+    }
+
+    private void selectFinished(int lastItem) {
+        dispatchPendingUpdates();
+        if (lastItem != NO_POSITION) {
+            mListener.onSelectEnd(lastItem);
+        }
+        mSelectionRecorder.clearSelect();
+
+        mHaveCalledSelectStart = false;
+        if (mStateListener != null) {
+            mStateListener.onSelectFinished();
+        }
+        switch (mSelectState) {
+            case SELECT_STATE_DRAG_FROM_NORMAL:
+                if (mShouldAutoChangeState) {
+                    changeSelectState(SELECT_STATE_SLIDE);
+                } else {
+                    changeSelectState(SELECT_STATE_NORMAL);
+                }
+                break;
+            case SELECT_STATE_DRAG_FROM_SLIDE:
+                changeSelectState(SELECT_STATE_SLIDE);
+                break;
+            default:
+                // doesn't change the selection state
+                break;
+        }
+    }
+
+    private void changeSelectState(int newState) {
+        final int oldState = mSelectState;
+        Logger.i("Select state changed: {} --> {}", stateName(oldState), stateName(newState));
+        mSelectState = newState;
+        if (mTrace != null) {
+            mTrace.record(GestureTrace.TYPE_STATE_CHANGE, oldState, newState);
+        }
+        if (mStateListener != null) {
+            mStateListener.onSelectStateChange(oldState, newState);
+        }
+    }
+
+    private void trace(int type) {
+        if (mTrace != null) {
+            mTrace.record(type);
+        }
+    }
+
+    private void trace(int type, int arg) {
+        if (mTrace != null) {
+            mTrace.record(type, arg);
+        }
+    }
+
+    public static String stateName(int state) {
+        switch (state) {
+            case SELECT_STATE_NORMAL:
+                return "NormalState";
+            case SELECT_STATE_SLIDE:
+                return "SlideState";
+            case SELECT_STATE_DRAG_FROM_NORMAL:
+                return "DragFromNormal";
+            case SELECT_STATE_DRAG_FROM_SLIDE:
+                return "DragFromSlide";
+            default:
+                return "Unknown";
+        }
+    }
+
+    /**
+     * Records the callbacks into the trace before passing them on.
+     */
+    private static class TracingListener implements SelectionListener {
+        private final SelectionListener mListener;
+        private final GestureTrace mTrace;
+
+        TracingListener(SelectionListener listener, GestureTrace trace) {
+            mListener = listener;
+            mTrace = trace;
+        }
+
+        @Override
+        public boolean onSelectChange(int position, boolean isSelected) {
+            final boolean result = mListener.onSelectChange(position, isSelected);
+            mTrace.record(GestureTrace.TYPE_SELECT_CHANGE, position, isSelected ? 1 : 0,
+                    result ? 1 : 0);
+            return result;
+        }
+
+        @Override
+        public void onSelectRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+            mTrace.record(GestureTrace.TYPE_RANGE_CHANGE, fromInclusive, toInclusive,
+                    isSelected ? 1 : 0);
+            mListener.onSelectRangeChange(fromInclusive, toInclusive, isSelected);
+        }
+
+        @Override
+        public void onSelectionFlush(int fromInclusive, int toInclusive) {
+            mTrace.record(GestureTrace.TYPE_SELECTION_FLUSH, fromInclusive, toInclusive);
+            mListener.onSelectionFlush(fromInclusive, toInclusive);
+        }
+
+        @Override
+        public void onSelectStart(int start) {
+            mTrace.record(GestureTrace.TYPE_SELECT_START, start);
+            mListener.onSelectStart(start);
+        }
+
+        @Override
+        public void onSelectEnd(int end) {
+            mTrace.record(GestureTrace.TYPE_SELECT_END, end);
+            mListener.onSelectEnd(end);
+        }
+    }
+}
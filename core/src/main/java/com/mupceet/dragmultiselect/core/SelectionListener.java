@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+/**
+ * Receives the selection changes from {@link SelectionEngine}.
+ */
+public interface SelectionListener {
+    /**
+     * Called when changing item state.
+     *
+     * @param position   this item want to change the state to new state.
+     * @param isSelected true if the position should be selected, false otherwise.
+     * @return Whether to set the new state successfully.
+     */
+    boolean onSelectChange(int position, boolean isSelected);
+
+    /**
+     * Called when changing the state of a contiguous range of items.
+     *
+     * @param fromInclusive the first position of the range.
+     * @param toInclusive   the last position of the range.
+     * @param isSelected    true if the range should be selected, false otherwise.
+     */
+    void onSelectRangeChange(int fromInclusive, int toInclusive, boolean isSelected);
+
+    /**
+     * Called after the changes of a batch have been dispatched, once per frame if the updates
+     * are coalesced.
+     *
+     * @param fromInclusive the first position changed in the batch.
+     * @param toInclusive   the last position changed in the batch.
+     */
+    void onSelectionFlush(int fromInclusive, int toInclusive);
+
+    /**
+     * Called when selection start.
+     *
+     * @param start the first selected item.
+     */
+    void onSelectStart(int start);
+
+    /**
+     * Called when selection end.
+     *
+     * @param end the last selected item.
+     */
+    void onSelectEnd(int end);
+}
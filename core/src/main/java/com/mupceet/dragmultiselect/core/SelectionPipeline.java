@@ -0,0 +1,295 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Delivers the selection changes to a {@link Sink} on an {@link Executor} in the order they
+ * were published, so expensive work like persisting the selection never blocks a frame. At
+ * most one delivery task runs at a time, so even a thread pool delivers in order.
+ * <p>
+ * The queue never blocks the publisher. Once the changes waiting since the last commit reach
+ * the limit, they are compacted into the net state of each position, which is bounded by the
+ * number of distinct runs instead of the number of frames.
+ * <p>
+ * If the sink throws, the exception is thrown to the executor and the changes after the one
+ * it threw on are kept at the front of the queue, including any commit among them. The next
+ * change published schedules their delivery again.
+ */
+public final class SelectionPipeline {
+    public static final int DEFAULT_MAX_PENDING = 256;
+
+    private static final int OP_UNSELECT = 0;
+    private static final int OP_SELECT = 1;
+    private static final int OP_COMMIT = 2;
+    private static final int OP_SIZE = 3;
+
+    /**
+     * Receives the selection changes on the executor.
+     */
+    public interface Sink {
+        /**
+         * Called for each change in the order of publishing, or with the net changes once
+         * compacted.
+         *
+         * @param fromInclusive the first position of the range.
+         * @param toInclusive   the last position of the range.
+         * @param isSelected    the new state of the range.
+         */
+        void onRangeChange(int fromInclusive, int toInclusive, boolean isSelected);
+
+        /**
+         * Called after all the changes of a selection are delivered.
+         *
+         * @param start the first selected item.
+         * @param end   the last selected item.
+         */
+        void onCommit(int start, int end);
+    }
+
+    private final Executor mExecutor;
+    private final Sink mSink;
+    private final int mMaxPending;
+    private final Object mLock = new Object();
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    // Guarded by mLock.
+    private int[] mOps = new int[OP_SIZE * 16];
+    private int[] mSpareOps;
+    private int mOpCount;
+    /**
+     * Index of the first change after the last commit, the changes before it are never
+     * compacted.
+     */
+    private int mSegmentStart;
+    private int mCompactThreshold;
+    private boolean mDrainScheduled;
+
+    public SelectionPipeline(Executor executor, Sink sink) {
+        this(executor, sink, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * @param executor   The executor to deliver the changes on.
+     * @param sink       The receiver of the changes.
+     * @param maxPending The number of changes waiting since the last commit which triggers a
+     *                   compaction.
+     */
+    public SelectionPipeline(Executor executor, Sink sink, int maxPending) {
+        mExecutor = executor;
+        mSink = sink;
+        mMaxPending = Math.max(1, maxPending);
+        mCompactThreshold = mMaxPending;
+    }
+
+    public void publish(int fromInclusive, int toInclusive, boolean isSelected) {
+        if (toInclusive < fromInclusive) {
+            return;
+        }
+        synchronized (mLock) {
+            append(fromInclusive, toInclusive, isSelected ? OP_SELECT : OP_UNSELECT);
+            if (mOpCount - mSegmentStart >= mCompactThreshold) {
+                compact();
+                // Don't compact on each change if the runs are really that many.
+                mCompactThreshold = Math.max(mMaxPending, 2 * (mOpCount - mSegmentStart));
+            }
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Marks the end of a selection, delivered after all the changes published before.
+     */
+    public void commit(int start, int end) {
+        synchronized (mLock) {
+            append(start, end, OP_COMMIT);
+            mSegmentStart = mOpCount;
+            mCompactThreshold = mMaxPending;
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * @return The number of changes and commits waiting to be delivered.
+     */
+    public int pendingCount() {
+        synchronized (mLock) {
+            return mOpCount;
+        }
+    }
+
+    private void append(int from, int to, int op) {
+        final int index = mOpCount * OP_SIZE;
+        if (index + OP_SIZE > mOps.length) {
+            final int[] ops = new int[mOps.length * 2];
+            System.arraycopy(mOps, 0, ops, 0, index);
+            mOps = ops;
+        }
+        mOps[index] = from;
+        mOps[index + 1] = to;
+        mOps[index + 2] = op;
+        mOpCount++;
+    }
+
+    private void scheduleDrain() {
+        if (!mDrainScheduled) {
+            mDrainScheduled = true;
+            mExecutor.execute(mDrainTask);
+        }
+    }
+
+    /**
+     * Replace the changes since the last commit by the net state of each position they
+     * touched: walking backwards, only the parts not covered by a later change are kept.
+     */
+    private void compact() {
+        final int start = mSegmentStart;
+        final SelectionBitmap covered = new SelectionBitmap();
+        final SelectionBitmap selected = new SelectionBitmap();
+        final GapVisitor gaps = new GapVisitor(selected);
+        for (int i = mOpCount - 1; i >= start; i--) {
+            final int index = i * OP_SIZE;
+            gaps.visit(covered, mOps[index], mOps[index + 1], mOps[index + 2] == OP_SELECT);
+            covered.setRange(mOps[index], mOps[index + 1], true);
+        }
+        mOpCount = start;
+        // Runs of the same state are merged, in ascending order.
+        covered.forEachRun(new SelectionBitmap.RunVisitor() {
+            @Override
+            public void onRun(int fromInclusive, int toInclusive) {
+                appendNetState(selected, fromInclusive, toInclusive);
+            }
+        });
+    }
+
+    private void appendNetState(final SelectionBitmap selected, final int from, final int to) {
+        final int[] next = {from};
+        selected.forEachRun(from, to, new SelectionBitmap.RunVisitor() {
+            @Override
+            public void onRun(int fromInclusive, int toInclusive) {
+                if (next[0] < fromInclusive) {
+                    append(next[0], fromInclusive - 1, OP_UNSELECT);
+                }
+                append(fromInclusive, toInclusive, OP_SELECT);
+                next[0] = toInclusive + 1;
+            }
+        });
+        if (next[0] <= to) {
+            append(next[0], to, OP_UNSELECT);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            final int[] ops;
+            final int count;
+            synchronized (mLock) {
+                if (mOpCount == 0) {
+                    mDrainScheduled = false;
+                    return;
+                }
+                ops = mOps;
+                count = mOpCount;
+                mOps = mSpareOps != null ? mSpareOps : new int[ops.length];
+                mSpareOps = null;
+                mOpCount = 0;
+                mSegmentStart = 0;
+                mCompactThreshold = mMaxPending;
+            }
+            int next = 0;
+            boolean delivered = false;
+            try {
+                while (next < count) {
+                    // Move on first, the change the sink throws on isn't delivered again.
+                    deliver(ops, next++);
+                }
+                delivered = true;
+            } finally {
+                synchronized (mLock) {
+                    if (!delivered) {
+                        requeue(ops, next, count);
+                        // Let the next change schedule a new task.
+                        mDrainScheduled = false;
+                    }
+                    mSpareOps = ops;
+                }
+            }
+        }
+    }
+
+    private void deliver(int[] ops, int i) {
+        final int index = i * OP_SIZE;
+        if (ops[index + 2] == OP_COMMIT) {
+            mSink.onCommit(ops[index], ops[index + 1]);
+        } else {
+            mSink.onRangeChange(ops[index], ops[index + 1], ops[index + 2] == OP_SELECT);
+        }
+    }
+
+    /**
+     * Put the undelivered changes back in front of the ones published since, they are not
+     * compacted with them.
+     */
+    private void requeue(int[] ops, int from, int count) {
+        final int tailCount = count - from;
+        if (tailCount == 0) {
+            return;
+        }
+        final int[] merged = new int[Math.max(mOps.length, (tailCount + mOpCount) * OP_SIZE)];
+        System.arraycopy(ops, from * OP_SIZE, merged, 0, tailCount * OP_SIZE);
+        System.arraycopy(mOps, 0, merged, tailCount * OP_SIZE, mOpCount * OP_SIZE);
+        mOps = merged;
+        mOpCount += tailCount;
+        mSegmentStart += tailCount;
+    }
+
+    /**
+     * Records the state of the parts of a range which are not covered yet.
+     */
+    private static class GapVisitor implements SelectionBitmap.RunVisitor {
+        private final SelectionBitmap mSelected;
+        private int mNext;
+        private boolean mState;
+
+        GapVisitor(SelectionBitmap selected) {
+            mSelected = selected;
+        }
+
+        void visit(SelectionBitmap covered, int from, int to, boolean state) {
+            mNext = from;
+            mState = state;
+            covered.forEachRun(from, to, this);
+            if (mNext <= to && state) {
+                mSelected.setRange(mNext, to, true);
+            }
+        }
+
+        @Override
+        public void onRun(int fromInclusive, int toInclusive) {
+            if (mNext < fromInclusive && mState) {
+                mSelected.setRange(mNext, fromInclusive - 1, true);
+            }
+            mNext = toInclusive + 1;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+/**
+ * Records the selected range of a drag selection, which starts from the first selected item
+ * and ends at the current item, and computes the changes between two updates.
+ * <p>
+ * In box mode, see {@link #setBoxSelection(int, int)}, the positions are cells of a grid and
+ * the selection is the rectangle between the first item and the current item.
+ * <p>
+ * If items are inserted, removed or moved during a selection, the recorded positions are
+ * remapped by {@link #onItemRangeInserted(int, int)}, {@link #onItemRangeRemoved(int, int)}
+ * and {@link #onItemRangeMoved(int, int, int)}, so the selection keeps following the same
+ * items. Each of them is O(1) whatever the number of items.
+ * <p>
+ * In box mode they shift the cells after the changed items to other rows and columns, so the
+ * rectangle no longer matches the dispatched items. The dispatched items are tracked by
+ * position from then on, and the next update unselects those outside the new rectangle and
+ * selects the cells of the new rectangle which are not dispatched yet. That update is
+ * O(rows) instead of O(changed rows).
+ */
+public final class SelectionRecorder {
+    public static final int NO_POSITION = -1;
+
+    /**
+     * The selected items position.
+     */
+    private int mStart = NO_POSITION;
+    private int mEnd = NO_POSITION;
+    /**
+     * The range which has been dispatched to the consumer, both are {@link #NO_POSITION} if
+     * all the dispatched items were removed.
+     */
+    private int mLastRealStart = NO_POSITION;
+    private int mLastRealEnd = NO_POSITION;
+    /**
+     * The end position which has been dispatched to the consumer.
+     */
+    private int mLastEnd = NO_POSITION;
+    /**
+     * The number of columns in box mode, or 0 in linear mode.
+     */
+    private int mSpanCount;
+    private int mItemCount;
+    private final RectDiff mRectDiff = new RectDiff();
+    /**
+     * The dispatched items in box mode once items are inserted, removed or moved during the
+     * selection, null if they are still the last dispatched rectangle.
+     */
+    private SelectionBitmap mBoxDispatched;
+
+    /**
+     * Receives the pending changes as contiguous ranges.
+     */
+    public interface RangeConsumer {
+        void onRangeChange(int fromInclusive, int toInclusive, boolean isSelected);
+    }
+
+    /**
+     * Sets the box mode, in which the selection is a rectangle of a grid instead of a range of
+     * positions. It should be set before the selection starts.
+     *
+     * @param spanCount the number of columns of the grid, 0 to select a range of positions.
+     * @param itemCount the number of items, positions after the last item are skipped.
+     */
+    public void setBoxSelection(int spanCount, int itemCount) {
+        mSpanCount = spanCount > 1 ? spanCount : 0;
+        mItemCount = itemCount;
+        mRectDiff.setGrid(spanCount, itemCount);
+    }
+
+    public boolean isBoxSelection() {
+        return mSpanCount > 0;
+    }
+
+    public void selectFirst(int position) {
+        mStart = position;
+        mEnd = position;
+        mLastRealStart = position;
+        mLastRealEnd = position;
+        mLastEnd = position;
+        mBoxDispatched = null;
+    }
+
+    public void clearSelect() {
+        mStart = NO_POSITION;
+        mEnd = NO_POSITION;
+        mLastRealStart = NO_POSITION;
+        mLastRealEnd = NO_POSITION;
+        mLastEnd = NO_POSITION;
+        mBoxDispatched = null;
+    }
+
+    public int startPosition() {
+        return mStart;
+    }
+
+    public int endPosition() {
+        return mEnd;
+    }
+
+    /**
+     * @return The end position which has been dispatched to the consumer, or
+     * {@link #NO_POSITION} if nothing is dispatched since all the dispatched items were
+     * removed.
+     */
+    public int dispatchedEndPosition() {
+        return mLastEnd;
+    }
+
+    /**
+     * Remap the recorded positions after items are inserted.
+     *
+     * @param positionStart the position of the first inserted item.
+     * @param itemCount     the number of inserted items.
+     * @return Whether the inserted items are inside the dispatched range, they should be
+     * selected to keep the range contiguous then. Always false in box mode, where the cells
+     * move to other rows.
+     */
+    public boolean onItemRangeInserted(int positionStart, int itemCount) {
+        if (itemCount <= 0) {
+            return false;
+        }
+        if (mSpanCount > 0) {
+            if (mStart != NO_POSITION) {
+                boxDispatched().insertRange(positionStart, itemCount);
+            }
+            mItemCount += itemCount;
+            mRectDiff.setGrid(mSpanCount, mItemCount);
+        }
+        if (mStart == NO_POSITION) {
+            return false;
+        }
+        final boolean inside = mSpanCount == 0
+                && positionStart > mLastRealStart && positionStart <= mLastRealEnd;
+        mStart = insert(mStart, positionStart, itemCount);
+        mEnd = insert(mEnd, positionStart, itemCount);
+        mLastRealStart = insert(mLastRealStart, positionStart, itemCount);
+        mLastRealEnd = insert(mLastRealEnd, positionStart, itemCount);
+        mLastEnd = insert(mLastEnd, positionStart, itemCount);
+        return inside;
+    }
+
+    /**
+     * Remap the recorded positions after items are removed. The removed items are dropped
+     * from the dispatched range. If the first selected item is removed, the selection
+     * continues from the nearest item left in the range; if all of them are removed, it
+     * continues from the item before them, which is selected on the next update.
+     *
+     * @param positionStart the position of the first removed item before removal.
+     * @param itemCount     the number of removed items.
+     */
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        if (itemCount <= 0) {
+            return;
+        }
+        if (mSpanCount > 0) {
+            if (mStart != NO_POSITION) {
+                boxDispatched().removeRange(positionStart, itemCount);
+            }
+            mItemCount = Math.max(0, mItemCount - itemCount);
+            mRectDiff.setGrid(mSpanCount, mItemCount);
+        }
+        if (mStart == NO_POSITION) {
+            return;
+        }
+        final int removedEnd = positionStart + itemCount;
+        final boolean startRemoved = mStart >= positionStart && mStart < removedEnd;
+        final boolean forward = mStart == mLastRealStart;
+        final boolean endForward = mEnd >= mStart;
+        int realStart = NO_POSITION;
+        int realEnd = NO_POSITION;
+        if (mLastRealStart != NO_POSITION) {
+            // The start maps to the first item after the removed ones, the end to the last
+            // item before them, so a range which is removed entirely becomes empty.
+            realStart = mLastRealStart < removedEnd
+                    ? Math.min(mLastRealStart, positionStart) : mLastRealStart - itemCount;
+            realEnd = mLastRealEnd < positionStart
+                    ? mLastRealEnd : Math.max(mLastRealEnd - itemCount, positionStart - 1);
+        }
+        final boolean empty = realStart == NO_POSITION || realStart > realEnd;
+        if (empty) {
+            mStart = startRemoved ? Math.max(0, positionStart - 1)
+                    : remove(mStart, positionStart, itemCount);
+            mLastRealStart = NO_POSITION;
+            mLastRealEnd = NO_POSITION;
+            mLastEnd = NO_POSITION;
+        } else {
+            if (!startRemoved) {
+                mStart = remove(mStart, positionStart, itemCount);
+            } else if (mSpanCount > 0) {
+                mStart = Math.min(positionStart, realEnd);
+            } else {
+                mStart = forward ? realStart : realEnd;
+            }
+            mLastRealStart = realStart;
+            mLastRealEnd = realEnd;
+            if (mSpanCount > 0) {
+                mLastEnd = remove(mLastEnd, positionStart, itemCount);
+            } else {
+                mLastEnd = forward ? realEnd : realStart;
+            }
+        }
+        if (empty && startRemoved) {
+            mEnd = mStart;
+        } else if (mEnd >= positionStart && mEnd < removedEnd) {
+            // The end contracts towards the start, positions after the last item may be gone.
+            mEnd = endForward ? Math.max(mStart, positionStart - 1) : positionStart;
+        } else {
+            mEnd = remove(mEnd, positionStart, itemCount);
+        }
+    }
+
+    /**
+     * Remap the recorded positions after items are moved, as a removal followed by an
+     * insertion.
+     *
+     * @param fromPosition the position of the first moved item before moving.
+     * @param toPosition   the position of the first moved item after moving.
+     * @param itemCount    the number of moved items.
+     * @return Whether the moved items are inside the dispatched range now, see
+     * {@link #onItemRangeInserted(int, int)}.
+     */
+    public boolean onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        if (itemCount <= 0 || fromPosition == toPosition) {
+            return false;
+        }
+        onItemRangeRemoved(fromPosition, itemCount);
+        return onItemRangeInserted(toPosition, itemCount);
+    }
+
+    /**
+     * Move the selection to new positions of its first item and of the dispatched end, e.g.
+     * looked up by stable ids after the data set changed.
+     *
+     * @param start the new position of the first selected item.
+     * @param end   the new dispatched end position, or {@link #NO_POSITION} if it's gone and
+     *              nothing but the first item is considered dispatched.
+     */
+    public void relocate(int start, int end) {
+        if (mStart == NO_POSITION || start == NO_POSITION) {
+            return;
+        }
+        if (end == NO_POSITION) {
+            end = start;
+        }
+        mStart = start;
+        mEnd = end;
+        mLastEnd = end;
+        mLastRealStart = Math.min(start, end);
+        mLastRealEnd = Math.max(start, end);
+        mBoxDispatched = null;
+    }
+
+    private static int insert(int position, int positionStart, int itemCount) {
+        return position >= positionStart ? position + itemCount : position;
+    }
+
+    /**
+     * @return The new position, or the position of the first item after the removed ones if
+     * the item is removed.
+     */
+    private static int remove(int position, int positionStart, int itemCount) {
+        if (position < positionStart) {
+            return position;
+        }
+        if (position < positionStart + itemCount) {
+            return positionStart;
+        }
+        return position - itemCount;
+    }
+
+    public boolean selectUpdate(int position) {
+        if (mStart == NO_POSITION && mEnd == NO_POSITION) {
+            return false;
+        }
+
+        if (mEnd == position && mLastEnd != NO_POSITION && mBoxDispatched == null) {
+            // Dispatched already, unless all the dispatched items were removed or the cells
+            // moved in box mode.
+            return false;
+        }
+        if (Logger.isDebug()) {
+            Logger.d("selectUpdate=" + position + ", mStart=" + mStart + ", mEnd=" + mEnd
+                    + ", mLastRealStart=" + mLastRealStart + ", mLastRealEnd=" + mLastRealEnd);
+        }
+        mEnd = position;
+        return true;
+    }
+
+    /**
+     * Dispatch the difference between the last dispatched range and the current range.
+     * Both ranges contain {@link #mStart}, so there are at most two runs on each side:
+     * one before the start and one after it.
+     *
+     * @param consumer receives the selected runs first, then the unselected runs.
+     */
+    public void dispatchUpdate(RangeConsumer consumer) {
+        if (mStart == NO_POSITION || mEnd == NO_POSITION) {
+            return;
+        }
+        if (mSpanCount > 0) {
+            dispatchBoxUpdate(consumer);
+            return;
+        }
+        final int newStart = Math.min(mStart, mEnd);
+        final int newEnd = Math.max(mStart, mEnd);
+        final int lastStart = mLastRealStart;
+        final int lastEnd = mLastRealEnd;
+        // Update the recorded range first, the consumer may end the selection.
+        mLastRealStart = newStart;
+        mLastRealEnd = newEnd;
+        if (lastStart == NO_POSITION) {
+            // All the dispatched items were removed.
+            mLastEnd = mEnd;
+            consumer.onRangeChange(newStart, newEnd, true);
+            return;
+        }
+
+        if (newStart < lastStart) {
+            consumer.onRangeChange(newStart, lastStart - 1, true);
+        }
+        if (newEnd > lastEnd) {
+            consumer.onRangeChange(lastEnd + 1, newEnd, true);
+        }
+        if (newStart > lastStart) {
+            consumer.onRangeChange(lastStart, newStart - 1, false);
+        }
+        if (newEnd < lastEnd) {
+            consumer.onRangeChange(newEnd + 1, lastEnd, false);
+        }
+        mLastEnd = mEnd;
+    }
+
+    /**
+     * Dispatch the difference between the last dispatched rectangle and the current one, both
+     * of them contain the cell of {@link #mStart}.
+     */
+    private void dispatchBoxUpdate(RangeConsumer consumer) {
+        if (mBoxDispatched != null) {
+            dispatchMovedBoxUpdate(consumer);
+            return;
+        }
+        final int span = mSpanCount;
+        final int anchorRow = mStart / span;
+        final int anchorColumn = mStart % span;
+        final boolean lastEmpty = mLastEnd == NO_POSITION;
+        final int lastRow = lastEmpty ? anchorRow : mLastEnd / span;
+        final int lastColumn = lastEmpty ? anchorColumn : mLastEnd % span;
+        final int newRow = mEnd / span;
+        final int newColumn = mEnd % span;
+        // Update the recorded range first, the consumer may end the selection.
+        mLastEnd = mEnd;
+        mLastRealStart = Math.min(mStart, mEnd);
+        mLastRealEnd = Math.max(mStart, mEnd);
+
+        // An empty rectangle if all the dispatched items were removed.
+        mRectDiff.diff(lastEmpty ? 0 : Math.min(anchorRow, lastRow),
+                lastEmpty ? -1 : Math.max(anchorRow, lastRow),
+                Math.min(anchorColumn, lastColumn), Math.max(anchorColumn, lastColumn),
+                Math.min(anchorRow, newRow), Math.max(anchorRow, newRow),
+                Math.min(anchorColumn, newColumn), Math.max(anchorColumn, newColumn),
+                consumer);
+    }
+
+    /**
+     * Dispatch the difference between the dispatched items, which no longer form a rectangle
+     * after items were inserted, removed or moved, and the current rectangle.
+     */
+    private void dispatchMovedBoxUpdate(RangeConsumer consumer) {
+        final SelectionBitmap dispatched = mBoxDispatched;
+        final SelectionBitmap rectangle = new SelectionBitmap();
+        addBoxCells(rectangle, mEnd);
+        // Update the recorded range first, the consumer may end the selection.
+        mBoxDispatched = null;
+        mLastEnd = mEnd;
+        mLastRealStart = Math.min(mStart, mEnd);
+        mLastRealEnd = Math.max(mStart, mEnd);
+
+        rectangle.forEachRun(new Subtraction(dispatched, true, consumer));
+        dispatched.forEachRun(new Subtraction(rectangle, false, consumer));
+    }
+
+    /**
+     * @return The dispatched items, starting from the last dispatched rectangle before the
+     * first insertion, removal or move.
+     */
+    private SelectionBitmap boxDispatched() {
+        if (mBoxDispatched == null) {
+            mBoxDispatched = new SelectionBitmap();
+            if (mLastEnd != NO_POSITION) {
+                addBoxCells(mBoxDispatched, mLastEnd);
+            }
+        }
+        return mBoxDispatched;
+    }
+
+    /**
+     * Add the cells of the rectangle between {@link #mStart} and the end, positions after the
+     * last item are skipped.
+     */
+    private void addBoxCells(SelectionBitmap cells, int end) {
+        final int span = mSpanCount;
+        final int rowTo = Math.max(mStart, end) / span;
+        final int columnFrom = Math.min(mStart % span, end % span);
+        final int columnTo = Math.max(mStart % span, end % span);
+        for (int row = Math.min(mStart, end) / span; row <= rowTo; row++) {
+            final int from = row * span + columnFrom;
+            final int to = Math.min(row * span + columnTo, mItemCount - 1);
+            if (from > to) {
+                break;
+            }
+            cells.setRange(from, to, true);
+        }
+    }
+
+    /**
+     * Dispatch the parts of the visited runs which are not in the other bitmap.
+     */
+    private static final class Subtraction implements SelectionBitmap.RunVisitor {
+        private final SelectionBitmap mOther;
+        private final boolean mIsSelected;
+        private final RangeConsumer mConsumer;
+        private int mNext;
+        private final SelectionBitmap.RunVisitor mGapFinder = new SelectionBitmap.RunVisitor() {
+            @Override
+            public void onRun(int fromInclusive, int toInclusive) {
+                if (fromInclusive > mNext) {
+                    mConsumer.onRangeChange(mNext, fromInclusive - 1, mIsSelected);
+                }
+                mNext = toInclusive + 1;
+            }
+        };
+
+        Subtraction(SelectionBitmap other, boolean isSelected, RangeConsumer consumer) {
+            mOther = other;
+            mIsSelected = isSelected;
+            mConsumer = consumer;
+        }
+
+        @Override
+        public void onRun(int fromInclusive, int toInclusive) {
+            mNext = fromInclusive;
+            mOther.forEachRun(fromInclusive, toInclusive, mGapFinder);
+            if (mNext <= toInclusive) {
+                mConsumer.onRangeChange(mNext, toInclusive, mIsSelected);
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+/**
+ * Replays a {@link GestureTrace} through a {@link SelectionEngine} at full speed, without
+ * the timing of the original gestures, e.g. in a JVM test or benchmark.
+ */
+public final class TraceReplayer {
+    private TraceReplayer() {
+    }
+
+    /**
+     * Feeds the recorded calls into the engine. Records before the first gesture are
+     * skipped except the configuration, since the buffer may have overwritten the start of
+     * that gesture. If the slide state was entered before, the engine enters it first.
+     *
+     * @param trace  The trace to replay.
+     * @param engine The engine to feed, usually a new one.
+     * @return The number of calls replayed.
+     */
+    public static int replay(GestureTrace trace, SelectionEngine engine) {
+        final int first = findFirstGesture(trace);
+        int replayed = 0;
+        if (isSlideStateBefore(trace, first)) {
+            engine.activeSlideSelect();
+        }
+        for (int i = 0; i < trace.size(); i++) {
+            final int type = trace.getType(i);
+            if (GestureTrace.isInput(type) && (i >= first || isConfig(type))) {
+                apply(engine, type, trace.getArg(i, 0), trace.getArg(i, 1), trace.getArg(i, 2));
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Replays the trace through a new engine and compares the callbacks it makes with the
+     * recorded ones. The listener returns the recorded result of each
+     * {@link SelectionListener#onSelectChange(int, boolean)}.
+     *
+     * @param trace The trace to verify.
+     * @return The index of the first recorded callback which isn't made the same way on
+     * replay, the size of the trace if the replay makes more callbacks, or -1 if they match.
+     */
+    public static int findFirstMismatch(GestureTrace trace) {
+        final VerifyingListener listener = new VerifyingListener(trace, findFirstGesture(trace));
+        replay(trace, new SelectionEngine(listener));
+        return listener.finish();
+    }
+
+    private static int findFirstGesture(GestureTrace trace) {
+        for (int i = 0; i < trace.size(); i++) {
+            switch (trace.getType(i)) {
+                case GestureTrace.TYPE_ACTIVE_SLIDE:
+                case GestureTrace.TYPE_ACTIVE_DRAG:
+                case GestureTrace.TYPE_START_SLIDE:
+                    return i;
+                default:
+                    break;
+            }
+        }
+        return trace.size();
+    }
+
+    private static boolean isSlideStateBefore(GestureTrace trace, int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            if (trace.getType(i) == GestureTrace.TYPE_STATE_CHANGE) {
+                return trace.getArg(i, 1) == SelectionEngine.SELECT_STATE_SLIDE;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isConfig(int type) {
+        return type == GestureTrace.TYPE_SET_AUTO_ENTER_SLIDE
+                || type == GestureTrace.TYPE_SET_ALLOW_DRAG_IN_SLIDE
+                || type == GestureTrace.TYPE_SET_COALESCE
+                || type == GestureTrace.TYPE_SET_BOX;
+    }
+
+    private static void apply(SelectionEngine engine, int type, int arg1, int arg2,
+            int arg3) {
+        switch (type) {
+            case GestureTrace.TYPE_ACTIVE_SLIDE:
+                engine.activeSlideSelect();
+                break;
+            case GestureTrace.TYPE_ACTIVE_DRAG:
+                engine.activeDragSelect(arg1);
+                break;
+            case GestureTrace.TYPE_INACTIVE:
+                engine.inactiveSelect();
+                break;
+            case GestureTrace.TYPE_START_SLIDE:
+                engine.startSlideSelect(arg1);
+                break;
+            case GestureTrace.TYPE_COMMIT_SLIDE:
+                engine.commitSlideSelect();
+                break;
+            case GestureTrace.TYPE_GESTURE_END_BEFORE_INTERCEPT:
+                engine.onGestureEndBeforeIntercept();
+                break;
+            case GestureTrace.TYPE_GESTURE_END:
+                engine.onGestureEnd();
+                break;
+            case GestureTrace.TYPE_UPDATE:
+                engine.updateSelectedRange(arg1);
+                break;
+            case GestureTrace.TYPE_FLUSH:
+                engine.flushPendingUpdates();
+                break;
+            case GestureTrace.TYPE_SET_AUTO_ENTER_SLIDE:
+                engine.setAutoEnterSlideState(arg1 != 0);
+                break;
+            case GestureTrace.TYPE_SET_ALLOW_DRAG_IN_SLIDE:
+                engine.setAllowDragInSlideState(arg1 != 0);
+                break;
+            case GestureTrace.TYPE_SET_COALESCE:
+                engine.setCoalesceUpdates(arg1 != 0);
+                break;
+            case GestureTrace.TYPE_SET_BOX:
+                engine.setBoxSelection(arg1, arg2);
+                break;
+            case GestureTrace.TYPE_ITEMS_INSERTED:
+                engine.onItemRangeInserted(arg1, arg2);
+                break;
+            case GestureTrace.TYPE_ITEMS_REMOVED:
+                engine.onItemRangeRemoved(arg1, arg2);
+                break;
+            case GestureTrace.TYPE_ITEMS_MOVED:
+                engine.onItemRangeMoved(arg1, arg2, arg3);
+                break;
+            case GestureTrace.TYPE_RELOCATE:
+                engine.relocateSelection(arg1, arg2);
+                break;
+            default:
+                Logger.e("Unknown trace record type: {}", type);
+        }
+    }
+
+    /**
+     * Compares each callback with the next recorded one.
+     */
+    private static class VerifyingListener implements SelectionListener {
+        private final GestureTrace mTrace;
+        private int mNext;
+        private int mMismatch = -1;
+
+        VerifyingListener(GestureTrace trace, int start) {
+            mTrace = trace;
+            mNext = start;
+        }
+
+        @Override
+        public boolean onSelectChange(int position, boolean isSelected) {
+            final int index = expect(GestureTrace.TYPE_SELECT_CHANGE, position,
+                    isSelected ? 1 : 0);
+            // Keep the replay on the recorded path even after a mismatch.
+            return index < 0 || mTrace.getArg(index, 2) != 0;
+        }
+
+        @Override
+        public void onSelectRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+            expect(GestureTrace.TYPE_RANGE_CHANGE, fromInclusive, toInclusive,
+                    isSelected ? 1 : 0);
+        }
+
+        @Override
+        public void onSelectionFlush(int fromInclusive, int toInclusive) {
+            expect(GestureTrace.TYPE_SELECTION_FLUSH, fromInclusive, toInclusive);
+        }
+
+        @Override
+        public void onSelectStart(int start) {
+            expect(GestureTrace.TYPE_SELECT_START, start);
+        }
+
+        @Override
+        public void onSelectEnd(int end) {
+            expect(GestureTrace.TYPE_SELECT_END, end);
+        }
+
+        private int expect(int type, int... args) {
+            final int index = nextCallback();
+            if (index >= mTrace.size()) {
+                mismatch(index);
+                return -1;
+            }
+            mNext = index + 1;
+            boolean match = mTrace.getType(index) == type;
+            for (int arg = 0; match && arg < args.length; arg++) {
+                match = mTrace.getArg(index, arg) == args[arg];
+            }
+            if (!match) {
+                mismatch(index);
+            }
+            return match ? index : -1;
+        }
+
+        private int nextCallback() {
+            int index = mNext;
+            while (index < mTrace.size() && !isCallback(mTrace.getType(index))) {
+                index++;
+            }
+            return index;
+        }
+
+        private static boolean isCallback(int type) {
+            // State changes are recorded by the engine itself, not by the listener.
+            return GestureTrace.isOutput(type) && type != GestureTrace.TYPE_STATE_CHANGE;
+        }
+
+        private void mismatch(int index) {
+            if (mMismatch < 0) {
+                mMismatch = index;
+            }
+        }
+
+        int finish() {
+            if (mMismatch < 0 && nextCallback() < mTrace.size()) {
+                // Recorded callbacks which aren't made on replay.
+                mMismatch = nextCallback();
+            }
+            return mMismatch;
+        }
+    }
+}
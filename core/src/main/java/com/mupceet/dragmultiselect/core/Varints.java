@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Variable length encoding of integers, 7 bits per byte with the high bit set on all but the
+ * last byte. Signed values are zigzag encoded first, so small negative values stay short.
+ */
+final class Varints {
+    private Varints() {
+    }
+
+    static void writeUnsigned(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static void writeSigned(ByteArrayOutputStream out, long value) {
+        writeUnsigned(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Reads the values written by {@link Varints}, throws {@link IllegalArgumentException}
+     * if the input is truncated or malformed.
+     */
+    static final class Reader {
+        private final byte[] mBytes;
+        private int mOffset;
+
+        Reader(byte[] bytes) {
+            mBytes = bytes;
+        }
+
+        boolean hasRemaining() {
+            return mOffset < mBytes.length;
+        }
+
+        int readByte() {
+            if (mOffset >= mBytes.length) {
+                throw new IllegalArgumentException("Unexpected end of input at " + mOffset);
+            }
+            return mBytes[mOffset++] & 0xFF;
+        }
+
+        long readUnsigned() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint at " + mOffset);
+        }
+
+        long readSigned() {
+            final long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readInt() {
+            final long value = readSigned();
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Int out of range at " + mOffset);
+            }
+            return (int) value;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+/**
+ * Maps how deep the touch point is in the hotspot area to the fraction of the target
+ * velocity to scroll at.
+ *
+ * @see EdgeVelocityCalculator#setInterpolator(VelocityInterpolator)
+ */
+public interface VelocityInterpolator {
+    /**
+     * The velocity grows linearly with the depth. It's the default one.
+     */
+    VelocityInterpolator LINEAR = new VelocityInterpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return input;
+        }
+    };
+
+    /**
+     * The velocity grows with the square of the depth, which gives finer control near the
+     * start of the hotspot area.
+     */
+    VelocityInterpolator QUADRATIC = new VelocityInterpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return input * input;
+        }
+    };
+
+    /**
+     * Exponential ease-in, the velocity stays low in most of the hotspot area and rises
+     * sharply at its end.
+     */
+    VelocityInterpolator EXPONENTIAL = new VelocityInterpolator() {
+        private final float mMin = (float) Math.pow(2, -10);
+
+        @Override
+        public float getInterpolation(float input) {
+            if (input <= 0) {
+                return 0;
+            }
+            // Scaled so that 0 maps to 0 and 1 maps to 1.
+            return ((float) Math.pow(2, 10 * (input - 1)) - mMin) / (1 - mMin);
+        }
+    };
+
+    /**
+     * @param input The depth in the hotspot area, in [0, 1].
+     * @return The fraction of the target velocity, in [0, 1].
+     */
+    float getInterpolation(float input);
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AutoScrollerTest {
+    private static final long FRAME_NANOS = 1_000_000;
+
+    private final List<Integer> mStates = new ArrayList<>();
+    private long mNow = 1_000_000_000;
+    private AutoScroller mScroller;
+
+    @Before
+    public void setUp() {
+        mScroller = new AutoScroller(new AutoScroller.ScrollStateChangeListener() {
+            @Override
+            public void onScrollStateChange(int scrollState) {
+                mStates.add(scrollState);
+            }
+        }, new Clock() {
+            @Override
+            public long nanoTime() {
+                return mNow;
+            }
+        });
+    }
+
+    @Test
+    public void startsWhenTheVelocityGrows() {
+        mScroller.setVelocity(0.5f);
+        assertFalse(mScroller.isScrolling());
+        mScroller.setVelocity(1f);
+        assertTrue(mScroller.isScrolling());
+        mScroller.setVelocity(0);
+        assertFalse(mScroller.isScrolling());
+
+        assertEquals("[" + AutoScroller.ScrollStateChangeListener.SCROLL_IDLE + ", "
+                        + AutoScroller.ScrollStateChangeListener.SCROLL_STARTING + ", "
+                        + AutoScroller.ScrollStateChangeListener.SCROLL_STOPPING + "]",
+                mStates.toString());
+        assertEquals(0, mScroller.getDelta(nextFrame()));
+    }
+
+    @Test
+    public void deltaFollowsTheFrameTime() {
+        start(2f);
+        assertEquals(2, mScroller.getDelta(nextFrame()));
+        mNow += 3 * FRAME_NANOS;
+        assertEquals(6, mScroller.getDelta(mNow));
+    }
+
+    @Test
+    public void frameBeforeTheStartScrollsNothing() {
+        start(2f);
+        assertEquals(0, mScroller.getDelta(mNow - FRAME_NANOS));
+        assertEquals(2, mScroller.getDelta(nextFrame()));
+    }
+
+    @Test
+    public void subPixelDeltasAccumulate() {
+        start(0.25f);
+        int total = 0;
+        final StringBuilder deltas = new StringBuilder();
+        for (int frame = 0; frame < 8; frame++) {
+            final int delta = mScroller.getDelta(nextFrame());
+            deltas.append(delta);
+            total += delta;
+        }
+        assertEquals("00010001", deltas.toString());
+        assertEquals(2, total);
+    }
+
+    @Test
+    public void remainderIsDroppedWhenTurningAround() {
+        start(0.25f);
+        for (int frame = 0; frame < 3; frame++) {
+            assertEquals(0, mScroller.getDelta(nextFrame()));
+        }
+        mScroller.setVelocity(-0.5f);
+        assertEquals(0, mScroller.getDelta(nextFrame()));
+        assertEquals(-1, mScroller.getDelta(nextFrame()));
+    }
+
+    @Test
+    public void rampUpEasesOutToTheVelocity() {
+        mScroller.setRampUpDuration(100);
+        start(1f);
+        mNow += 50 * FRAME_NANOS;
+        // Half of the ramp up reaches 3/4 of the velocity.
+        assertEquals(37, mScroller.getDelta(mNow));
+        mNow += 100 * FRAME_NANOS;
+        assertEquals(100, mScroller.getDelta(mNow));
+    }
+
+    private void start(float velocity) {
+        mScroller.setVelocity(velocity / 2);
+        mScroller.setVelocity(velocity);
+        assertTrue(mScroller.isScrolling());
+    }
+
+    private long nextFrame() {
+        mNow += FRAME_NANOS;
+        return mNow;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class EdgeVelocityCalculatorTest {
+    private static final float SIZE = 1000;
+    private static final float DELTA = 1e-4f;
+
+    private EdgeVelocityCalculator mCalculator;
+
+    @Before
+    public void setUp() {
+        mCalculator = new EdgeVelocityCalculator();
+        mCalculator.setRelativeHotspotEdges(0.1f);
+        // The size of the view per second, 1 pixel per millisecond.
+        mCalculator.setRelativeVelocity(1);
+    }
+
+    @Test
+    public void edgeValueIsTheDepthInTheHotspot() {
+        assertEquals(-0.5f, mCalculator.getEdgeValue(SIZE, 50, false), DELTA);
+        assertEquals(0.75f, mCalculator.getEdgeValue(SIZE, 975, false), DELTA);
+        assertEquals(0f, mCalculator.getEdgeValue(SIZE, 500, false), DELTA);
+    }
+
+    @Test
+    public void hotspotIsClampedToTheMaximumEdge() {
+        mCalculator.setMaximumHotspotEdges(50);
+        assertEquals(-0.5f, mCalculator.getEdgeValue(SIZE, 25, false), DELTA);
+        assertEquals(0f, mCalculator.getEdgeValue(SIZE, 75, false), DELTA);
+    }
+
+    @Test
+    public void beyondTheEdgeOnlyScrollsOnceStarted() {
+        assertEquals(0f, mCalculator.getEdgeValue(SIZE, -10, false), DELTA);
+        assertEquals(-1f, mCalculator.getEdgeValue(SIZE, -10, true), DELTA);
+        assertEquals(1f, mCalculator.getEdgeValue(SIZE, SIZE + 10, true), DELTA);
+
+        mCalculator.setExtendBeyondEdges(false);
+        assertEquals(0f, mCalculator.getEdgeValue(SIZE, -10, true), DELTA);
+    }
+
+    @Test
+    public void velocityScalesWithTheEdgeValue() {
+        assertEquals(-0.5f, mCalculator.computeVelocity(-0.5f, SIZE), DELTA);
+        assertEquals(1f, mCalculator.computeVelocity(1f, SIZE), DELTA);
+        assertEquals(0f, mCalculator.computeVelocity(0f, SIZE), DELTA);
+    }
+
+    @Test
+    public void velocityIsClamped() {
+        mCalculator.setMinimumVelocity(800);
+        assertEquals(0.8f, mCalculator.computeVelocity(0.5f, SIZE), DELTA);
+        mCalculator.setMinimumVelocity(0);
+        mCalculator.setMaximumVelocity(600);
+        assertEquals(-0.6f, mCalculator.computeVelocity(-1f, SIZE), DELTA);
+    }
+
+    @Test
+    public void interpolatorShapesTheVelocity() {
+        mCalculator.setInterpolator(VelocityInterpolator.QUADRATIC);
+        assertEquals(0.25f, mCalculator.computeVelocity(0.5f, SIZE), DELTA);
+        mCalculator.setInterpolator(VelocityInterpolator.EXPONENTIAL);
+        assertEquals(1f, mCalculator.computeVelocity(1f, SIZE), DELTA);
+        assertEquals(0f, mCalculator.computeVelocity(0.001f, SIZE), 0.01f);
+    }
+
+    @Test
+    public void adaptiveVelocityCrossesTheContentInTheDuration() {
+        mCalculator.setMaximumVelocity(600);
+        mCalculator.setAdaptiveDuration(10_000);
+        mCalculator.setContentExtent(100_000);
+        // 100000 pixels in 10 seconds, above the maximum velocity.
+        assertEquals(10f, mCalculator.computeVelocity(1f, SIZE), DELTA);
+
+        mCalculator.setContentExtent(1000);
+        // Never slower than without adaption.
+        assertEquals(0.6f, mCalculator.computeVelocity(1f, SIZE), DELTA);
+    }
+}
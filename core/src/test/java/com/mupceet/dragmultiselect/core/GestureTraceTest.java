@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class GestureTraceTest {
+    @Test
+    public void varintsRoundTrip() {
+        final long[] values = {0, 1, -1, 63, -64, 64, 300, Integer.MAX_VALUE,
+                Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long value : values) {
+            Varints.writeSigned(out, value);
+            Varints.writeUnsigned(out, value);
+        }
+        final Varints.Reader reader = new Varints.Reader(out.toByteArray());
+        for (long value : values) {
+            assertEquals(value, reader.readSigned());
+            assertEquals(value, reader.readUnsigned());
+        }
+        assertFalse(reader.hasRemaining());
+    }
+
+    @Test
+    public void smallVarintsTakeOneByte() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Varints.writeUnsigned(out, 127);
+        Varints.writeSigned(out, -64);
+        assertEquals(2, out.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedVarintIsRejected() {
+        new Varints.Reader(new byte[]{(byte) 0x80}).readUnsigned();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfRangeIntIsRejected() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Varints.writeSigned(out, Integer.MAX_VALUE + 1L);
+        new Varints.Reader(out.toByteArray()).readInt();
+    }
+
+    @Test
+    public void traceRoundTrip() {
+        final GestureTrace trace = new GestureTrace(16, new FakeClock(1_000));
+        trace.record(GestureTrace.TYPE_SET_BOX, 4, 100);
+        trace.record(GestureTrace.TYPE_ACTIVE_DRAG, 5);
+        trace.recordMotion(2, 10.5f, -3f, 5_000);
+        trace.record(GestureTrace.TYPE_ITEMS_MOVED, 7, 2, 1);
+        trace.record(GestureTrace.TYPE_RANGE_CHANGE, 6, 8, 1);
+        trace.record(GestureTrace.TYPE_GESTURE_END);
+
+        final GestureTrace decoded = GestureTrace.fromByteArray(trace.toByteArray());
+        assertTracesEqual(trace, decoded);
+        assertEquals(10.5f, Float.intBitsToFloat(decoded.getArg(2, 1)), 0f);
+    }
+
+    @Test
+    public void fullTraceKeepsTheNewestRecords() {
+        final GestureTrace trace = new GestureTrace(3, new FakeClock(1));
+        for (int position = 0; position < 5; position++) {
+            trace.record(GestureTrace.TYPE_UPDATE, position);
+        }
+        assertEquals(3, trace.size());
+        assertEquals(2, trace.getArg(0, 0));
+        assertEquals(4, trace.getArg(2, 0));
+        assertTracesEqual(trace, GestureTrace.fromByteArray(trace.toByteArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromByteArrayRejectsOtherData() {
+        GestureTrace.fromByteArray(new SelectionBitmap().toByteArray());
+    }
+
+    private static void assertTracesEqual(GestureTrace expected, GestureTrace actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getType(i), actual.getType(i));
+            assertEquals(expected.getTimeNanos(i), actual.getTimeNanos(i));
+            for (int arg = 0; arg < 3; arg++) {
+                assertEquals(expected.getArg(i, arg), actual.getArg(i, arg));
+            }
+        }
+    }
+
+    /**
+     * Advances by a fixed step on each read.
+     */
+    private static class FakeClock implements Clock {
+        private final long mStep;
+        private long mNow;
+
+        FakeClock(long step) {
+            mStep = step;
+        }
+
+        @Override
+        public long nanoTime() {
+            mNow += mStep;
+            return mNow;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LoggerTest {
+    @Test
+    public void defaultSinkDoesNotReplaceTheSetSink() {
+        final RecordingSink sink = new RecordingSink();
+        final RecordingSink defaultSink = new RecordingSink();
+        Logger.setSink(sink);
+        Logger.setDefaultSink(defaultSink);
+
+        Logger.e("position {}", 3);
+        assertEquals("[DMSH E: position 3]", sink.mMessages.toString());
+        assertEquals("[]", defaultSink.mMessages.toString());
+    }
+
+    @Test
+    public void formatReplacesThePlaceholders() {
+        assertEquals("1 to 2", Logger.format("{} to {}", 1, 2));
+        assertEquals("1 to {}", Logger.format("{} to {}", 1));
+        assertEquals("none", Logger.format("none", 1));
+    }
+
+    private static class RecordingSink implements Logger.Sink {
+        private final List<String> mMessages = new ArrayList<>();
+
+        @Override
+        public void d(String tag, String msg) {
+            mMessages.add(tag + " D: " + msg);
+        }
+
+        @Override
+        public void i(String tag, String msg) {
+            mMessages.add(tag + " I: " + msg);
+        }
+
+        @Override
+        public void e(String tag, String msg) {
+            mMessages.add(tag + " E: " + msg);
+        }
+    }
+}
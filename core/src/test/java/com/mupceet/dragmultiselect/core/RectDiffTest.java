@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class RectDiffTest {
+    private RectDiff mRectDiff;
+    private final List<String> mRanges = new ArrayList<>();
+    private final SelectionRecorder.RangeConsumer mConsumer =
+            new SelectionRecorder.RangeConsumer() {
+                @Override
+                public void onRangeChange(int fromInclusive, int toInclusive,
+                                          boolean isSelected) {
+                    mRanges.add(fromInclusive + "-" + toInclusive + " " + isSelected);
+                }
+            };
+
+    @Before
+    public void setUp() {
+        mRectDiff = new RectDiff();
+        mRectDiff.setGrid(4, 100);
+    }
+
+    @Test
+    public void fullRowsAreOneRange() {
+        mRectDiff.diff(0, -1, 0, -1, 1, 2, 0, 3, mConsumer);
+        assertEquals("[4-11 true]", mRanges.toString());
+    }
+
+    @Test
+    public void shrunkColumnsAreUnselectedRowByRow() {
+        mRectDiff.diff(0, 1, 0, 3, 0, 1, 0, 1, mConsumer);
+        assertEquals("[2-3 false, 6-7 false]", mRanges.toString());
+    }
+
+    @Test
+    public void adjacentRangesAreMerged() {
+        mRectDiff.diff(1, 1, 1, 2, 0, 2, 0, 3, mConsumer);
+        assertEquals("[0-4 true, 7-11 true]", mRanges.toString());
+    }
+
+    @Test
+    public void movedRectangleSelectsBeforeUnselecting() {
+        mRectDiff.diff(0, 0, 0, 1, 1, 1, 0, 1, mConsumer);
+        assertEquals("[4-5 true, 0-1 false]", mRanges.toString());
+    }
+
+    @Test
+    public void sameRectangleDispatchesNothing() {
+        mRectDiff.diff(1, 3, 1, 2, 1, 3, 1, 2, mConsumer);
+        assertEquals("[]", mRanges.toString());
+    }
+
+    @Test
+    public void cellsAfterTheLastItemAreSkipped() {
+        mRectDiff.setGrid(4, 6);
+        mRectDiff.diff(0, -1, 0, -1, 0, 2, 0, 3, mConsumer);
+        assertEquals("[0-5 true]", mRanges.toString());
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SelectionBitmapTest {
+    @Test
+    public void setAndClearPositions() {
+        final SelectionBitmap bitmap = new SelectionBitmap();
+        assertTrue(bitmap.isEmpty());
+        bitmap.add(3);
+        bitmap.setRange(10, 19, true);
+        bitmap.set(SelectionRecorder.NO_POSITION, true);
+        assertTrue(bitmap.contains(3));
+        assertTrue(bitmap.contains(15));
+        assertFalse(bitmap.contains(20));
+        assertFalse(bitmap.contains(SelectionRecorder.NO_POSITION));
+        assertEquals(11, bitmap.cardinality());
+
+        bitmap.remove(3);
+        bitmap.setRange(12, 13, false);
+        assertEquals("[10-11, 14-19]", runsOf(bitmap));
+
+        bitmap.clear();
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.cardinality());
+    }
+
+    @Test
+    public void rangesAcrossChunksAreMergedRuns() {
+        final SelectionBitmap bitmap = new SelectionBitmap();
+        bitmap.setRange(10, 200_000, true);
+        assertEquals(199_991, bitmap.cardinality());
+        assertEquals(1, bitmap.runCount());
+
+        bitmap.remove(100_000);
+        assertEquals("[10-99999, 100001-200000]", runsOf(bitmap));
+    }
+
+    @Test
+    public void manyRunsConvertToBitmapAndBack() {
+        final SelectionBitmap bitmap = new SelectionBitmap();
+        for (int position = 0; position < 20_000; position += 2) {
+            bitmap.add(position);
+        }
+        assertEquals(10_000, bitmap.runCount());
+        assertTrue(bitmap.contains(19_998));
+        assertFalse(bitmap.contains(19_999));
+
+        bitmap.setRange(0, 19_999, true);
+        assertEquals(1, bitmap.runCount());
+        assertEquals(20_000, bitmap.cardinality());
+    }
+
+    @Test
+    public void forEachRunClipsToTheRange() {
+        final SelectionBitmap bitmap = new SelectionBitmap();
+        bitmap.setRange(0, 9, true);
+        bitmap.setRange(20, 29, true);
+        bitmap.setRange(40, 49, true);
+        final List<String> runs = new ArrayList<>();
+        bitmap.forEachRun(5, 25, new SelectionBitmap.RunVisitor() {
+            @Override
+            public void onRun(int fromInclusive, int toInclusive) {
+                runs.add(fromInclusive + "-" + toInclusive);
+            }
+        });
+        assertEquals("[5-9, 20-25]", runs.toString());
+    }
+
+    @Test
+    public void insertRangeShiftsAndSplitsRuns() {
+        final SelectionBitmap bitmap = new SelectionBitmap();
+        bitmap.setRange(5, 9, true);
+        bitmap.insertRange(7, 3);
+        assertEquals("[5-6, 10-12]", runsOf(bitmap));
+
+        bitmap.insertRange(0, 70_000);
+        assertEquals("[70005-70006, 70010-70012]", runsOf(bitmap));
+    }
+
+    @Test
+    public void removeRangeDropsAndJoinsRuns() {
+        final SelectionBitmap bitmap = new SelectionBitmap();
+        bitmap.setRange(5, 6, true);
+        bitmap.setRange(10, 12, true);
+        bitmap.removeRange(6, 5);
+        assertEquals("[5-7]", runsOf(bitmap));
+
+        bitmap.removeRange(0, 5);
+        assertEquals("[0-2]", runsOf(bitmap));
+    }
+
+    @Test
+    public void byteArrayRoundTrip() {
+        final SelectionBitmap bitmap = new SelectionBitmap();
+        bitmap.setRange(0, 0, true);
+        bitmap.setRange(3, 65_540, true);
+        bitmap.setRange(1_000_000, 1_000_009, true);
+        for (int position = 2_000_000; position < 2_010_000; position += 3) {
+            bitmap.add(position);
+        }
+        final byte[] bytes = bitmap.toByteArray();
+        final SelectionBitmap decoded = SelectionBitmap.fromByteArray(bytes);
+        assertEquals(runsOf(bitmap), runsOf(decoded));
+        assertArrayEquals(bytes, decoded.toByteArray());
+    }
+
+    @Test
+    public void largeSelectionEncodesByRuns() {
+        // A million items selected in a thousand ranges of 500.
+        final SelectionBitmap bitmap = new SelectionBitmap();
+        for (int start = 0; start < 1_000_000; start += 1000) {
+            bitmap.setRange(start, start + 499, true);
+        }
+        assertEquals(1000, bitmap.runCount());
+        assertEquals(500_000, bitmap.cardinality());
+
+        final byte[] bytes = bitmap.toByteArray();
+        // Each run takes a few bytes whatever its length.
+        assertTrue("size " + bytes.length, bytes.length <= 4 * 1000 + 16);
+        final SelectionBitmap decoded = SelectionBitmap.fromByteArray(bytes);
+        assertEquals(runsOf(bitmap), runsOf(decoded));
+        assertEquals(500_000, decoded.cardinality());
+    }
+
+    @Test
+    public void emptyByteArrayRoundTrip() {
+        final SelectionBitmap decoded =
+                SelectionBitmap.fromByteArray(new SelectionBitmap().toByteArray());
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromByteArrayRejectsOtherData() {
+        SelectionBitmap.fromByteArray(new byte[]{1, 2, 3});
+    }
+
+    @Test
+    public void snapshotIsNotChangedByWrites() {
+        final SelectionBitmap bitmap = new SelectionBitmap();
+        bitmap.setRange(0, 99, true);
+        final SelectionBitmap snapshot = bitmap.snapshot();
+        bitmap.setRange(50, 59, false);
+        snapshot.add(200);
+        assertEquals("[0-49, 60-99]", runsOf(bitmap));
+        assertEquals("[0-99, 200-200]", runsOf(snapshot));
+    }
+
+    private static String runsOf(SelectionBitmap bitmap) {
+        final List<String> runs = new ArrayList<>();
+        bitmap.forEachRun(new SelectionBitmap.RunVisitor() {
+            @Override
+            public void onRun(int fromInclusive, int toInclusive) {
+                runs.add(fromInclusive + "-" + toInclusive);
+            }
+        });
+        return runs.toString();
+    }
+}
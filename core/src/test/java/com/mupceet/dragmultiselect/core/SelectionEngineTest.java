@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SelectionEngineTest {
+    private RecordingListener mListener;
+    private SelectionEngine mEngine;
+    private final List<String> mStates = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mListener = new RecordingListener();
+        mEngine = new SelectionEngine(mListener);
+        mEngine.setStateListener(new SelectionEngine.StateListener() {
+            @Override
+            public void onSelectStateChange(int before, int after) {
+                mStates.add(SelectionEngine.stateName(after));
+            }
+
+            @Override
+            public void onSelectFinished() { }
+        });
+    }
+
+    @Test
+    public void longPressDragReturnsToNormal() {
+        mEngine.activeDragSelect(3);
+        assertEquals(SelectionEngine.SELECT_STATE_DRAG_FROM_NORMAL, mEngine.getSelectState());
+        assertTrue(mEngine.isDragState());
+        mEngine.updateSelectedRange(6);
+        mEngine.onGestureEnd();
+
+        assertEquals("[start 3, change 3 true, range 4-6 true, flush 4-6, end 6]",
+                mListener.take());
+        assertEquals("[DragFromNormal, NormalState]", mStates.toString());
+        assertFalse(mEngine.isSelectActivated());
+    }
+
+    @Test
+    public void longPressDragEntersSlideIfEnabled() {
+        mEngine.setAutoEnterSlideState(true);
+        assertTrue(mEngine.isAutoEnterSlideState());
+        mEngine.activeDragSelect(3);
+        mEngine.onGestureEnd();
+
+        assertEquals("[DragFromNormal, SlideState]", mStates.toString());
+        assertTrue(mEngine.isSlideState());
+    }
+
+    @Test
+    public void refusedFirstItemKeepsNormal() {
+        mListener.mAccept = false;
+        mEngine.activeDragSelect(3);
+
+        assertEquals(SelectionEngine.SELECT_STATE_NORMAL, mEngine.getSelectState());
+        assertFalse(mEngine.updateSelectedRange(6));
+        assertEquals("[]", mStates.toString());
+    }
+
+    @Test
+    public void slideSelectCommitsTheFirstItemOnMove() {
+        mEngine.activeSlideSelect();
+        assertTrue(mEngine.startSlideSelect(2));
+        assertEquals("[start 2]", mListener.take());
+
+        assertTrue(mEngine.commitSlideSelect());
+        mEngine.updateSelectedRange(4);
+        mEngine.onGestureEnd();
+        assertEquals("[change 2 true, range 3-4 true, flush 3-4, end 4]", mListener.take());
+        assertTrue(mEngine.isSlideState());
+    }
+
+    @Test
+    public void tapInSlideStateSelectsTheItem() {
+        mEngine.activeSlideSelect();
+        mEngine.startSlideSelect(2);
+        mEngine.onGestureEnd();
+
+        assertEquals("[start 2, change 2 true, end 2]", mListener.take());
+        assertTrue(mEngine.isSlideState());
+    }
+
+    @Test
+    public void dragInSlideStateOnlyIfAllowed() {
+        mEngine.activeSlideSelect();
+        mEngine.activeDragSelect(5);
+        assertTrue(mEngine.isSlideState());
+
+        mEngine.setAllowDragInSlideState(true);
+        mEngine.activeDragSelect(5);
+        assertEquals(SelectionEngine.SELECT_STATE_DRAG_FROM_SLIDE, mEngine.getSelectState());
+        mEngine.onGestureEnd();
+        assertEquals("[SlideState, DragFromSlide, SlideState]", mStates.toString());
+    }
+
+    @Test
+    public void inactiveSelectEndsTheSelection() {
+        mEngine.activeDragSelect(3);
+        mEngine.updateSelectedRange(4);
+        mListener.take();
+        mEngine.inactiveSelect();
+
+        assertEquals("[end 4]", mListener.take());
+        assertEquals(SelectionEngine.SELECT_STATE_NORMAL, mEngine.getSelectState());
+    }
+
+    @Test
+    public void coalescedUpdatesDispatchTheNetChangeOnFlush() {
+        mEngine.setCoalesceUpdates(true);
+        mEngine.activeDragSelect(3);
+        mListener.take();
+        mEngine.updateSelectedRange(9);
+        mEngine.updateSelectedRange(1);
+        mEngine.updateSelectedRange(6);
+        assertTrue(mEngine.hasPendingUpdates());
+        assertEquals("[]", mListener.take());
+
+        mEngine.flushPendingUpdates();
+        assertEquals("[range 4-6 true, flush 4-6]", mListener.take());
+        assertEquals(3, mEngine.getDispatchedPositionCount());
+    }
+
+    @Test
+    public void traceIsStampedByTheClock() {
+        final long[] now = {0};
+        final GestureTrace trace = new GestureTrace(64, new Clock() {
+            @Override
+            public long nanoTime() {
+                return now[0];
+            }
+        });
+        mEngine.setTrace(trace);
+        now[0] = 16_000_000;
+        mEngine.activeDragSelect(3);
+        now[0] = 32_000_000;
+        mEngine.updateSelectedRange(5);
+
+        int updates = 0;
+        for (int i = 0; i < trace.size(); i++) {
+            if (trace.getType(i) == GestureTrace.TYPE_ACTIVE_DRAG) {
+                assertEquals(16_000_000, trace.getTimeNanos(i));
+            } else if (trace.getType(i) == GestureTrace.TYPE_UPDATE) {
+                assertEquals(32_000_000, trace.getTimeNanos(i));
+                updates++;
+            }
+        }
+        assertEquals(1, updates);
+        assertEquals(-1, TraceReplayer.findFirstMismatch(trace));
+    }
+
+    private static class RecordingListener implements SelectionListener {
+        private final List<String> mEvents = new ArrayList<>();
+        private boolean mAccept = true;
+
+        @Override
+        public boolean onSelectChange(int position, boolean isSelected) {
+            mEvents.add("change " + position + " " + isSelected);
+            return mAccept;
+        }
+
+        @Override
+        public void onSelectRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+            mEvents.add("range " + fromInclusive + "-" + toInclusive + " " + isSelected);
+        }
+
+        @Override
+        public void onSelectionFlush(int fromInclusive, int toInclusive) {
+            mEvents.add("flush " + fromInclusive + "-" + toInclusive);
+        }
+
+        @Override
+        public void onSelectStart(int start) {
+            mEvents.add("start " + start);
+        }
+
+        @Override
+        public void onSelectEnd(int end) {
+            mEvents.add("end " + end);
+        }
+
+        String take() {
+            final String events = mEvents.toString();
+            mEvents.clear();
+            return events;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SelectionPipelineTest {
+    private QueuedExecutor mExecutor;
+    private RecordingSink mSink;
+
+    @Before
+    public void setUp() {
+        mExecutor = new QueuedExecutor();
+        mSink = new RecordingSink();
+    }
+
+    @Test
+    public void changesAreDeliveredInOrderOnTheExecutor() {
+        final SelectionPipeline pipeline = new SelectionPipeline(mExecutor, mSink);
+        pipeline.publish(0, 9, true);
+        pipeline.publish(5, 9, false);
+        pipeline.commit(0, 4);
+        pipeline.publish(20, 20, true);
+        assertEquals("[]", mSink.mEvents.toString());
+        assertEquals(4, pipeline.pendingCount());
+
+        mExecutor.runAll();
+        assertEquals("[0-9 true, 5-9 false, commit 0-4, 20-20 true]", mSink.mEvents.toString());
+        assertEquals(0, pipeline.pendingCount());
+    }
+
+    @Test
+    public void onlyOneDeliveryTaskIsScheduled() {
+        final SelectionPipeline pipeline = new SelectionPipeline(mExecutor, mSink);
+        pipeline.publish(0, 0, true);
+        pipeline.publish(1, 1, true);
+        assertEquals(1, mExecutor.mTasks.size());
+
+        mExecutor.runAll();
+        pipeline.publish(2, 2, true);
+        assertEquals(1, mExecutor.mTasks.size());
+    }
+
+    @Test
+    public void emptyRangeIsNotPublished() {
+        final SelectionPipeline pipeline = new SelectionPipeline(mExecutor, mSink);
+        pipeline.publish(5, 4, true);
+        assertEquals(0, pipeline.pendingCount());
+    }
+
+    @Test
+    public void compactionKeepsTheNetState() {
+        final int maxPending = 8;
+        final SelectionPipeline pipeline = new SelectionPipeline(mExecutor, mSink, maxPending);
+        final BitSet expected = new BitSet();
+        // A drag going back and forth, each frame changes the end of the range.
+        for (int frame = 0; frame < 100; frame++) {
+            final int end = 10 + (frame * 7) % 30;
+            pipeline.publish(0, end, true);
+            pipeline.publish(end + 1, 50, false);
+            expected.set(0, end + 1);
+            expected.clear(end + 1, 51);
+        }
+        assertTrue(pipeline.pendingCount() <= maxPending);
+
+        mExecutor.runAll();
+        assertEquals(expected, mSink.mSelected);
+    }
+
+    @Test
+    public void changesBeforeACommitAreNotCompactedWithLaterOnes() {
+        final SelectionPipeline pipeline = new SelectionPipeline(mExecutor, mSink, 2);
+        pipeline.publish(0, 9, true);
+        pipeline.commit(0, 9);
+        pipeline.publish(0, 9, false);
+        pipeline.publish(0, 4, true);
+        pipeline.publish(0, 4, false);
+
+        mExecutor.runAll();
+        assertEquals("[0-9 true, commit 0-9]", mSink.mEvents.subList(0, 2).toString());
+        assertTrue(mSink.mSelected.isEmpty());
+    }
+
+    @Test
+    public void changesAfterAFailedOneAreDeliveredByTheNextTask() {
+        final SelectionPipeline pipeline = new SelectionPipeline(mExecutor, mSink);
+        pipeline.publish(0, 9, true);
+        pipeline.publish(3, 3, false);
+        pipeline.commit(0, 9);
+        mSink.mFailAt = 1;
+        try {
+            mExecutor.runAll();
+            fail();
+        } catch (IllegalStateException expected) {
+            // The sink threw on the second change.
+        }
+        assertEquals(1, pipeline.pendingCount());
+
+        pipeline.publish(20, 20, true);
+        assertEquals(1, mExecutor.mTasks.size());
+        mExecutor.runAll();
+        assertEquals("[0-9 true, 3-3 false, commit 0-9, 20-20 true]",
+                mSink.mEvents.toString());
+        assertEquals(0, pipeline.pendingCount());
+    }
+
+    @Test
+    public void failureOnTheLastChangeLetsTheNextChangeSchedule() {
+        final SelectionPipeline pipeline = new SelectionPipeline(mExecutor, mSink);
+        pipeline.publish(0, 9, true);
+        mSink.mFailAt = 0;
+        try {
+            mExecutor.runAll();
+            fail();
+        } catch (IllegalStateException expected) {
+            // The sink threw on the only change.
+        }
+
+        pipeline.publish(20, 20, true);
+        mExecutor.runAll();
+        assertEquals("[0-9 true, 20-20 true]", mSink.mEvents.toString());
+    }
+
+    private static class QueuedExecutor implements Executor {
+        private final Queue<Runnable> mTasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = mTasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static class RecordingSink implements SelectionPipeline.Sink {
+        private final List<String> mEvents = new ArrayList<>();
+        private final BitSet mSelected = new BitSet();
+        /**
+         * The index of the event to throw on once, or -1.
+         */
+        private int mFailAt = -1;
+
+        @Override
+        public void onRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+            if (mEvents.size() == mFailAt) {
+                mFailAt = -1;
+                mEvents.add(fromInclusive + "-" + toInclusive + " " + isSelected);
+                throw new IllegalStateException();
+            }
+            mEvents.add(fromInclusive + "-" + toInclusive + " " + isSelected);
+            mSelected.set(fromInclusive, toInclusive + 1, isSelected);
+        }
+
+        @Override
+        public void onCommit(int start, int end) {
+            mEvents.add("commit " + start + "-" + end);
+        }
+    }
+}
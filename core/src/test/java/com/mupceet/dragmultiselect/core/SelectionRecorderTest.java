@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SelectionRecorderTest {
+    private SelectionRecorder mRecorder;
+    private RecordingConsumer mConsumer;
+
+    @Before
+    public void setUp() {
+        mRecorder = new SelectionRecorder();
+        mConsumer = new RecordingConsumer();
+    }
+
+    @Test
+    public void linearDispatchesTheGrownRange() {
+        mRecorder.selectFirst(5);
+        assertTrue(mRecorder.selectUpdate(8));
+        mRecorder.dispatchUpdate(mConsumer);
+        assertEquals("[6-8 true]", mConsumer.take());
+    }
+
+    @Test
+    public void linearDispatchesSelectedRunsBeforeUnselectedRuns() {
+        mRecorder.selectFirst(5);
+        mRecorder.selectUpdate(8);
+        mRecorder.dispatchUpdate(mConsumer);
+        mConsumer.take();
+
+        mRecorder.selectUpdate(3);
+        mRecorder.dispatchUpdate(mConsumer);
+        assertEquals("[3-4 true, 6-8 false]", mConsumer.take());
+        assertEquals(3, mRecorder.dispatchedEndPosition());
+    }
+
+    @Test
+    public void linearSkipsTheDispatchedEnd() {
+        mRecorder.selectFirst(5);
+        mRecorder.selectUpdate(8);
+        mRecorder.dispatchUpdate(mConsumer);
+        assertFalse(mRecorder.selectUpdate(8));
+    }
+
+    @Test
+    public void boxDispatchesTheCellsOfTheRectangle() {
+        mRecorder.setBoxSelection(4, 100);
+        assertTrue(mRecorder.isBoxSelection());
+        // Row 1 column 1 to row 3 column 2.
+        mRecorder.selectFirst(5);
+        mRecorder.selectUpdate(14);
+        mRecorder.dispatchUpdate(mConsumer);
+        assertEquals("[6-6 true, 9-10 true, 13-14 true]", mConsumer.take());
+
+        // Row 1 column 1 to row 1 column 3.
+        mRecorder.selectUpdate(7);
+        mRecorder.dispatchUpdate(mConsumer);
+        assertEquals("[7-7 true, 9-10 false, 13-14 false]", mConsumer.take());
+    }
+
+    @Test
+    public void boxSkipsCellsAfterTheLastItem() {
+        mRecorder.setBoxSelection(4, 10);
+        mRecorder.selectFirst(0);
+        mRecorder.selectUpdate(11);
+        mRecorder.dispatchUpdate(mConsumer);
+        assertEquals("[1-9 true]", mConsumer.take());
+    }
+
+    @Test
+    public void insertInsideTheRangeShiftsTheEnd() {
+        mRecorder.selectFirst(5);
+        mRecorder.selectUpdate(8);
+        mRecorder.dispatchUpdate(mConsumer);
+
+        assertTrue(mRecorder.onItemRangeInserted(7, 2));
+        assertEquals(5, mRecorder.startPosition());
+        assertEquals(10, mRecorder.endPosition());
+        assertEquals(10, mRecorder.dispatchedEndPosition());
+    }
+
+    @Test
+    public void insertBeforeTheRangeShiftsTheWholeRange() {
+        mRecorder.selectFirst(5);
+        mRecorder.selectUpdate(8);
+        mRecorder.dispatchUpdate(mConsumer);
+
+        assertFalse(mRecorder.onItemRangeInserted(2, 3));
+        assertEquals(8, mRecorder.startPosition());
+        assertEquals(11, mRecorder.endPosition());
+        assertFalse(mRecorder.selectUpdate(11));
+    }
+
+    @Test
+    public void removeInsideTheRangeDropsTheRemovedItems() {
+        mRecorder.selectFirst(5);
+        mRecorder.selectUpdate(8);
+        mRecorder.dispatchUpdate(mConsumer);
+        mConsumer.take();
+
+        mRecorder.onItemRangeRemoved(6, 2);
+        assertEquals(5, mRecorder.startPosition());
+        assertEquals(6, mRecorder.endPosition());
+        assertEquals(6, mRecorder.dispatchedEndPosition());
+        mRecorder.selectUpdate(7);
+        mRecorder.dispatchUpdate(mConsumer);
+        assertEquals("[7-7 true]", mConsumer.take());
+    }
+
+    @Test
+    public void removeAllDispatchedItemsRestartsFromTheItemBefore() {
+        mRecorder.selectFirst(5);
+        mRecorder.onItemRangeRemoved(5, 1);
+        assertEquals(4, mRecorder.startPosition());
+        assertEquals(SelectionRecorder.NO_POSITION, mRecorder.dispatchedEndPosition());
+
+        assertTrue(mRecorder.selectUpdate(4));
+        mRecorder.dispatchUpdate(mConsumer);
+        assertEquals("[4-4 true]", mConsumer.take());
+    }
+
+    @Test
+    public void moveIsARemovalFollowedByAnInsertion() {
+        mRecorder.selectFirst(5);
+        mRecorder.selectUpdate(8);
+        mRecorder.dispatchUpdate(mConsumer);
+
+        assertTrue(mRecorder.onItemRangeMoved(20, 6, 1));
+        assertEquals(5, mRecorder.startPosition());
+        assertEquals(9, mRecorder.endPosition());
+    }
+
+    @Test
+    public void boxInsertSelectsTheCellsShiftedIntoTheRectangle() {
+        mRecorder.setBoxSelection(4, 100);
+        mRecorder.selectFirst(5);
+        mRecorder.selectUpdate(14);
+        mRecorder.dispatchUpdate(mConsumer);
+        mConsumer.take();
+
+        // The dispatched items are 5-6, 10-11 and 14-15 now, the end moves to column 3.
+        assertFalse(mRecorder.onItemRangeInserted(8, 1));
+        assertEquals(15, mRecorder.endPosition());
+        assertTrue(mRecorder.selectUpdate(15));
+        mRecorder.dispatchUpdate(mConsumer);
+        assertEquals("[7-7 true, 9-9 true, 13-13 true]", mConsumer.take());
+
+        // Back to the diff of rectangles.
+        mRecorder.selectUpdate(6);
+        mRecorder.dispatchUpdate(mConsumer);
+        assertEquals("[7-7 false, 9-11 false, 13-15 false]", mConsumer.take());
+    }
+
+    @Test
+    public void boxRemoveUnselectsTheCellsShiftedOutOfTheRectangle() {
+        mRecorder.setBoxSelection(4, 100);
+        mRecorder.selectFirst(5);
+        mRecorder.selectUpdate(14);
+        mRecorder.dispatchUpdate(mConsumer);
+        mConsumer.take();
+
+        // The dispatched items are 5, 8-9 and 12-13 now, the end moves to column 1.
+        mRecorder.onItemRangeRemoved(6, 1);
+        assertEquals(13, mRecorder.endPosition());
+        assertTrue(mRecorder.selectUpdate(13));
+        mRecorder.dispatchUpdate(mConsumer);
+        assertEquals("[8-8 false, 12-12 false]", mConsumer.take());
+    }
+
+    private static class RecordingConsumer implements SelectionRecorder.RangeConsumer {
+        private final List<String> mRanges = new ArrayList<>();
+
+        @Override
+        public void onRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+            mRanges.add(fromInclusive + "-" + toInclusive + " " + isSelected);
+        }
+
+        String take() {
+            final String ranges = mRanges.toString();
+            mRanges.clear();
+            return ranges;
+        }
+    }
+}
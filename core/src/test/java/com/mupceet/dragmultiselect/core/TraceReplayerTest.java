@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TraceReplayerTest {
+    private GestureTrace mTrace;
+
+    @Before
+    public void setUp() {
+        mTrace = new GestureTrace(256);
+        final SelectionEngine engine = new SelectionEngine(new SelectionListener() {
+            @Override
+            public boolean onSelectChange(int position, boolean isSelected) {
+                return true;
+            }
+
+            @Override
+            public void onSelectRangeChange(int fromInclusive, int toInclusive,
+                                            boolean isSelected) { }
+
+            @Override
+            public void onSelectionFlush(int fromInclusive, int toInclusive) { }
+
+            @Override
+            public void onSelectStart(int start) { }
+
+            @Override
+            public void onSelectEnd(int end) { }
+        });
+        engine.setTrace(mTrace);
+        engine.activeDragSelect(5);
+        engine.updateSelectedRange(9);
+        engine.onItemRangeInserted(7, 2);
+        engine.updateSelectedRange(2);
+        engine.onItemRangeRemoved(0, 1);
+        engine.updateSelectedRange(12);
+        engine.onGestureEnd();
+    }
+
+    @Test
+    public void replayMatchesTheRecordedCallbacks() {
+        assertEquals(-1, TraceReplayer.findFirstMismatch(mTrace));
+        assertEquals(-1, TraceReplayer.findFirstMismatch(
+                GestureTrace.fromByteArray(mTrace.toByteArray())));
+    }
+
+    @Test
+    public void corruptedCallbackIsReported() {
+        // The last range change, after the items were inserted and removed.
+        final int corrupted = lastIndexOf(mTrace, GestureTrace.TYPE_RANGE_CHANGE);
+        assertTrue(corrupted > 0);
+        final GestureTrace copy = new GestureTrace(mTrace.capacity());
+        for (int i = 0; i < mTrace.size(); i++) {
+            final int arg1 = mTrace.getArg(i, 1);
+            copy.record(mTrace.getType(i), mTrace.getTimeNanos(i), mTrace.getArg(i, 0),
+                    i == corrupted ? arg1 + 1 : arg1, mTrace.getArg(i, 2));
+        }
+        assertEquals(corrupted, TraceReplayer.findFirstMismatch(copy));
+    }
+
+    private static int lastIndexOf(GestureTrace trace, int type) {
+        for (int i = trace.size() - 1; i >= 0; i--) {
+            if (trace.getType(i) == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
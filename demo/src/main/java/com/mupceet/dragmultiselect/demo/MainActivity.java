@@ -16,11 +16,14 @@ import androidx.recyclerview.widget.SimpleItemAnimator;
 
 import com.mupceet.dragmultiselect.DragMultiSelectHelper;
 import com.mupceet.dragmultiselect.DragMultiSelectHelper.AdvanceCallback;
+import com.mupceet.dragmultiselect.core.SelectionBitmap;
 
 import java.util.Set;
 
 public class MainActivity extends AppCompatActivity {
     public static final String TAG = "MainActivity";
+    private static final String STATE_SELECT_HELPER = "select_helper";
+    private static final String STATE_SELECT_MODE = "select_mode";
     private DragMultiSelectHelper mDragMultiSelectHelper;
     private Toolbar mToolbar;
     private RecyclerView rvData;
@@ -67,6 +70,12 @@ public class MainActivity extends AppCompatActivity {
         });
         // 1. 创建 Callback
         mDragSelectTouchHelperCallback = new AdvanceCallback<String>() {
+            @Override
+            public SelectionBitmap currentSelectedPositions() {
+                // 按位置保存的选中状态，无需复制整个 id 集合
+                return mAdapter.getSelectedPositions();
+            }
+
             @Override
             public Set<String> currentSelectedId() {
                 return mAdapter.getSelectionSet();
@@ -84,6 +93,13 @@ public class MainActivity extends AppCompatActivity {
                 return mAdapter.select(position, isSelected);
             }
 
+            @Override
+            public void updateSelectRangeState(int fromInclusive, int toInclusive, boolean isSelected) {
+                Log.d(TAG, "updateSelectRangeState: " + fromInclusive + " ~ " + toInclusive);
+                // 一次性更新区间内条目的状态
+                mAdapter.selectRange(fromInclusive, toInclusive, isSelected);
+            }
+
             @Override
             public void onSelectStart(int start) {
                 super.onSelectStart(start);
@@ -104,9 +120,25 @@ public class MainActivity extends AppCompatActivity {
                 .setAllowDragInSlideState(true);
         // 3. 将 Helper 与 RecyclerView 关联
         mDragMultiSelectHelper.attachToRecyclerView(rvData);
+        if (savedInstanceState != null) {
+            // 恢复选择模式与选中的条目
+            SelectionBitmap selectedPositions = mDragMultiSelectHelper.onRestoreInstanceState(
+                    savedInstanceState.getParcelable(STATE_SELECT_HELPER));
+            mAdapter.setSelectMode(savedInstanceState.getBoolean(STATE_SELECT_MODE));
+            if (selectedPositions != null) {
+                mAdapter.restoreSelection(selectedPositions);
+            }
+        }
         mToolbar.setSubtitle("Mode: " + AdvanceCallback.Behavior.SelectAndReverse.name());
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putParcelable(STATE_SELECT_HELPER, mDragMultiSelectHelper.onSaveInstanceState());
+        outState.putBoolean(STATE_SELECT_MODE, mAdapter.isSelectMode());
+    }
+
     private int dp2px(float dp) {
         DisplayMetrics displayMetrics = new DisplayMetrics();
         getWindowManager().getDefaultDisplay().getMetrics(displayMetrics);
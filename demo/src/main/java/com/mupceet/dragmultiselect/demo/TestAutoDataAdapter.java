@@ -9,6 +9,8 @@ import android.view.ViewGroup;
 import androidx.appcompat.widget.AppCompatTextView;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.mupceet.dragmultiselect.core.SelectionBitmap;
+
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -25,6 +27,7 @@ public class TestAutoDataAdapter extends RecyclerView.Adapter<TestAutoDataAdapte
 
     private final List<Data> mDataList = new ArrayList<>();
     private final Set<String> mSelectedIdSet = new HashSet<>();
+    private final SelectionBitmap mSelectedPositions = new SelectionBitmap();
 
     public TestAutoDataAdapter(int size) {
         for (int i = 0; i < size; i++) {
@@ -87,6 +90,7 @@ public class TestAutoDataAdapter extends RecyclerView.Adapter<TestAutoDataAdapte
         } else {
             mSelectedIdSet.remove(getItemInfo(pos));
         }
+        mSelectedPositions.set(pos, data.isSelected);
         return true;
     }
 
@@ -102,12 +106,33 @@ public class TestAutoDataAdapter extends RecyclerView.Adapter<TestAutoDataAdapte
         } else {
             mSelectedIdSet.remove(getItemInfo(pos));
         }
+        mSelectedPositions.set(pos, data.isSelected);
         notifyItemChanged(pos);
         return true;
     }
 
+    public void selectRange(int from, int to, boolean selected) {
+        for (int pos = from; pos <= to; pos++) {
+            if (pos == 6) {
+                continue;
+            }
+            mDataList.get(pos).isSelected = selected;
+            if (selected) {
+                mSelectedIdSet.add(getItemInfo(pos));
+            } else {
+                mSelectedIdSet.remove(getItemInfo(pos));
+            }
+        }
+        mSelectedPositions.setRange(from, to, selected);
+        if (from <= 6 && 6 <= to) {
+            mSelectedPositions.set(6, mDataList.get(6).isSelected);
+        }
+        notifyItemRangeChanged(from, to - from + 1);
+    }
+
     public void deselectAll() {
         mSelectedIdSet.clear();
+        mSelectedPositions.clear();
         for (Data data : mDataList) {
             data.isSelected = false;
         }
@@ -120,6 +145,22 @@ public class TestAutoDataAdapter extends RecyclerView.Adapter<TestAutoDataAdapte
             data.isSelected = true;
             mSelectedIdSet.add(getItemInfo(i));
         }
+        mSelectedPositions.setRange(0, mDataList.size() - 1, true);
+        notifyDataSetChanged();
+    }
+
+    public void restoreSelection(SelectionBitmap selectedPositions) {
+        deselectAll();
+        selectedPositions.forEachRun(0, mDataList.size() - 1, new SelectionBitmap.RunVisitor() {
+            @Override
+            public void onRun(int fromInclusive, int toInclusive) {
+                for (int pos = fromInclusive; pos <= toInclusive; pos++) {
+                    mDataList.get(pos).isSelected = true;
+                    mSelectedIdSet.add(getItemInfo(pos));
+                }
+                mSelectedPositions.setRange(fromInclusive, toInclusive, true);
+            }
+        });
         notifyDataSetChanged();
     }
 
@@ -127,6 +168,10 @@ public class TestAutoDataAdapter extends RecyclerView.Adapter<TestAutoDataAdapte
         return mSelectedIdSet;
     }
 
+    public SelectionBitmap getSelectedPositions() {
+        return mSelectedPositions;
+    }
+
     // ----------------------
     // Click Listener
     // ----------------------
@@ -0,0 +1,6 @@
+# Remove the debug and info logs of the selection engine from minified builds, together
+# with the formatting of their messages.
+-assumenosideeffects class com.mupceet.dragmultiselect.core.Logger {
+    public static void d(...);
+    public static void i(...);
+}
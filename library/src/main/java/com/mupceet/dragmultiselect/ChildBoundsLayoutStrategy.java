@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * A {@link LayoutStrategy} which works with any layout manager whose children don't
+ * overlap, e.g. FlexboxLayoutManager. The scroll axis is the one the layout manager can
+ * scroll along.
+ * <p>
+ * The bounds of the children are recorded in a snapshot sorted by the scroll axis. As the
+ * children of a row may start at different offsets, a lookup is a binary search for the last
+ * child starting before the point, followed by a backward scan over the children which may
+ * still cover it, i.e. those starting within the largest child extent before the point.
+ * <p>
+ * Like {@link LinearItemPositionResolver}, the snapshot is reused until the children are
+ * scrolled or laid out again, and it falls back to
+ * {@link RecyclerView#findChildViewUnder(float, float)} while item animations are running.
+ */
+public class ChildBoundsLayoutStrategy extends ChildBoundsResolver implements LayoutStrategy {
+    /**
+     * The largest extent of the children along the scroll axis.
+     */
+    private float mMaxExtent;
+
+    @Override
+    public int getOrientation(@NonNull RecyclerView recyclerView) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager != null && layoutManager.canScrollHorizontally()
+                && !layoutManager.canScrollVertically()) {
+            return RecyclerView.HORIZONTAL;
+        }
+        return RecyclerView.VERTICAL;
+    }
+
+    @Override
+    void recordChildren(@NonNull RecyclerView rv, int childCount) {
+        mMaxExtent = 0;
+        for (int i = 0; i < childCount; i++) {
+            final View child = rv.getChildAt(i);
+            final int position = rv.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION) {
+                // The item is being removed.
+                continue;
+            }
+            final float start = mainStart(child);
+            final float end = mainEnd(child);
+            final float crossStart = crossStart(child);
+            final float crossEnd = crossEnd(child);
+            mMaxExtent = Math.max(mMaxExtent, end - start);
+            // Insertion sort, the children are almost sorted in layout order.
+            int j = mCount;
+            while (j > 0 && mMainStart[j - 1] > start) {
+                mPositions[j] = mPositions[j - 1];
+                mMainStart[j] = mMainStart[j - 1];
+                mMainEnd[j] = mMainEnd[j - 1];
+                mCrossStart[j] = mCrossStart[j - 1];
+                mCrossEnd[j] = mCrossEnd[j - 1];
+                j--;
+            }
+            mPositions[j] = position;
+            mMainStart[j] = start;
+            mMainEnd[j] = end;
+            mCrossStart[j] = crossStart;
+            mCrossEnd[j] = crossEnd;
+            mCount++;
+        }
+    }
+
+    /**
+     * Find the last child starting before the point, then scan back over the children which
+     * may still cover the point.
+     */
+    @Override
+    int search(float main, float cross) {
+        final float minStart = main - mMaxExtent;
+        for (int i = findLastStartingBefore(main); i >= 0 && mMainStart[i] >= minStart; i--) {
+            if (contains(i, main, cross)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
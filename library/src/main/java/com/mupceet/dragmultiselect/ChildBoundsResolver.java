@@ -0,0 +1,228 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Base of the resolvers which record the bounds of the children in a snapshot sorted by the
+ * scroll axis. Subclasses fill the snapshot in {@link #recordChildren(RecyclerView, int)} and
+ * look it up in {@link #search(float, float)}, this class keeps the snapshot, reuses it until
+ * the children are scrolled or laid out again, and checks the last hit item first.
+ * <p>
+ * While item animations are running, it falls back to
+ * {@link RecyclerView#findChildViewUnder(float, float)}.
+ */
+abstract class ChildBoundsResolver implements ItemPositionResolver {
+    private static final int INITIAL_CAPACITY = 32;
+
+    int[] mPositions = new int[INITIAL_CAPACITY];
+    float[] mMainStart = new float[INITIAL_CAPACITY];
+    float[] mMainEnd = new float[INITIAL_CAPACITY];
+    float[] mCrossStart = new float[INITIAL_CAPACITY];
+    float[] mCrossEnd = new float[INITIAL_CAPACITY];
+    int mCount = 0;
+    private int mOrientation = RecyclerView.VERTICAL;
+    private int mLastHitIndex = -1;
+    private boolean mSnapshotValid = false;
+
+    /**
+     * Keys used to check whether the snapshot still matches the children.
+     */
+    private RecyclerView mRecyclerView;
+    private int mChildCount;
+    private View mFirstChild;
+    private View mLastChild;
+    private float mFirstChildMainStart;
+    private float mLastChildMainEnd;
+
+    @Override
+    public int findItemPosition(@NonNull RecyclerView recyclerView, float x, float y) {
+        RecyclerView.ItemAnimator itemAnimator = recyclerView.getItemAnimator();
+        if (itemAnimator != null && itemAnimator.isRunning()) {
+            // Children may overlap or be out of order during animations.
+            return findChildPositionUnder(recyclerView, x, y);
+        }
+        if (!isSnapshotValid(recyclerView)) {
+            buildSnapshot(recyclerView);
+        }
+        if (!isSearchable()) {
+            return findChildPositionUnder(recyclerView, x, y);
+        }
+
+        final float main;
+        final float cross;
+        if (mOrientation == RecyclerView.VERTICAL) {
+            main = y;
+            cross = x;
+        } else {
+            main = x;
+            cross = y;
+        }
+        int index = mLastHitIndex;
+        if (index < 0 || index >= mCount || !contains(index, main, cross)) {
+            index = search(main, cross);
+            if (index < 0) {
+                return RecyclerView.NO_POSITION;
+            }
+            mLastHitIndex = index;
+        }
+        return mPositions[index];
+    }
+
+    @Override
+    public void invalidate() {
+        mSnapshotValid = false;
+        mLastHitIndex = -1;
+        mFirstChild = null;
+        mLastChild = null;
+    }
+
+    /**
+     * @return The scroll axis of the layout, {@link RecyclerView#VERTICAL} or
+     * {@link RecyclerView#HORIZONTAL}.
+     */
+    abstract int getOrientation(@NonNull RecyclerView recyclerView);
+
+    /**
+     * Record the bounds of the children into the snapshot, sorted by the start along the
+     * scroll axis. The first and the last child are already set.
+     */
+    abstract void recordChildren(@NonNull RecyclerView rv, int childCount);
+
+    /**
+     * @return The index in the snapshot of the item containing the point, or -1 if none.
+     */
+    abstract int search(float main, float cross);
+
+    /**
+     * @return Whether the snapshot can be searched, or the children have to be hit tested.
+     */
+    boolean isSearchable() {
+        return true;
+    }
+
+    private boolean isSnapshotValid(RecyclerView rv) {
+        if (!mSnapshotValid || rv != mRecyclerView || getOrientation(rv) != mOrientation) {
+            return false;
+        }
+        final int childCount = rv.getChildCount();
+        if (childCount != mChildCount) {
+            return false;
+        }
+        if (childCount == 0) {
+            return true;
+        }
+        final View firstChild = rv.getChildAt(0);
+        final View lastChild = rv.getChildAt(childCount - 1);
+        return firstChild == mFirstChild && lastChild == mLastChild
+                && Float.compare(mainStart(firstChild), mFirstChildMainStart) == 0
+                && Float.compare(mainEnd(lastChild), mLastChildMainEnd) == 0;
+    }
+
+    private void buildSnapshot(RecyclerView rv) {
+        mRecyclerView = rv;
+        mOrientation = getOrientation(rv);
+        final int childCount = rv.getChildCount();
+        ensureCapacity(childCount);
+        mChildCount = childCount;
+        mCount = 0;
+        mLastHitIndex = -1;
+        mSnapshotValid = true;
+        if (childCount == 0) {
+            mFirstChild = null;
+            mLastChild = null;
+        } else {
+            mFirstChild = rv.getChildAt(0);
+            mLastChild = rv.getChildAt(childCount - 1);
+            mFirstChildMainStart = mainStart(mFirstChild);
+            mLastChildMainEnd = mainEnd(mLastChild);
+        }
+        recordChildren(rv, childCount);
+    }
+
+    final boolean contains(int index, float main, float cross) {
+        return main >= mMainStart[index] && main <= mMainEnd[index]
+                && cross >= mCrossStart[index] && cross <= mCrossEnd[index];
+    }
+
+    /**
+     * @return The index of the last item in the snapshot starting before the point, or -1.
+     */
+    final int findLastStartingBefore(float main) {
+        int low = 0;
+        int high = mCount - 1;
+        int found = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (mMainStart[mid] <= main) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (mPositions.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, mPositions.length * 2);
+        mPositions = new int[newCapacity];
+        mMainStart = new float[newCapacity];
+        mMainEnd = new float[newCapacity];
+        mCrossStart = new float[newCapacity];
+        mCrossEnd = new float[newCapacity];
+    }
+
+    final float mainStart(View child) {
+        return mOrientation == RecyclerView.VERTICAL
+                ? child.getTop() + child.getTranslationY()
+                : child.getLeft() + child.getTranslationX();
+    }
+
+    final float mainEnd(View child) {
+        return mOrientation == RecyclerView.VERTICAL
+                ? child.getBottom() + child.getTranslationY()
+                : child.getRight() + child.getTranslationX();
+    }
+
+    final float crossStart(View child) {
+        return mOrientation == RecyclerView.VERTICAL
+                ? child.getLeft() + child.getTranslationX()
+                : child.getTop() + child.getTranslationY();
+    }
+
+    final float crossEnd(View child) {
+        return mOrientation == RecyclerView.VERTICAL
+                ? child.getRight() + child.getTranslationX()
+                : child.getBottom() + child.getTranslationY();
+    }
+
+    private static int findChildPositionUnder(RecyclerView rv, float x, float y) {
+        final View v = rv.findChildViewUnder(x, y);
+        if (v == null) {
+            return RecyclerView.NO_POSITION;
+        }
+        return rv.getChildAdapterPosition(v);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import com.mupceet.dragmultiselect.DragMultiSelectHelper.AdvanceCallback;
+import com.mupceet.dragmultiselect.core.SelectionBitmap;
+
+import java.util.Arrays;
+
+/**
+ * Applies the new states of an {@link AdvanceCallback} to its items and publishes them. If
+ * {@link AdvanceCallback#setDeferUnloadedItems(boolean)} is enabled, the states of the unloaded
+ * items are kept by position instead, and applied once the items are loaded.
+ */
+final class DeferredStates {
+    private final AdvanceCallback<?> mCallback;
+    private final PipelinePublisher mPublisher;
+    private boolean mEnabled;
+    /**
+     * States of the unloaded items, kept by position until they are loaded.
+     */
+    private final SelectionBitmap mSelected = new SelectionBitmap();
+    private final SelectionBitmap mUnselected = new SelectionBitmap();
+    private final Resolver mResolver = new Resolver();
+
+    DeferredStates(AdvanceCallback<?> callback, PipelinePublisher publisher) {
+        mCallback = callback;
+        mPublisher = publisher;
+    }
+
+    void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled) {
+            mSelected.clear();
+            mUnselected.clear();
+        }
+    }
+
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * @return The positions of the unloaded items which will be selected once loaded.
+     */
+    SelectionBitmap selectedPositions() {
+        return mSelected;
+    }
+
+    boolean hasStates() {
+        return !mSelected.isEmpty() || !mUnselected.isEmpty();
+    }
+
+    /**
+     * Apply the kept states of the items in the range which are loaded now.
+     */
+    void resolve(int fromInclusive, int toInclusive) {
+        mResolver.resolve(mSelected, true, fromInclusive, toInclusive);
+        mResolver.resolve(mUnselected, false, fromInclusive, toInclusive);
+    }
+
+    /**
+     * @return Whether the state is set successfully, a kept state always is.
+     */
+    boolean applyState(int position, boolean isSelected) {
+        if (mEnabled && !mCallback.isItemLoaded(position)) {
+            // Published once it's resolved.
+            setPendingState(position, position, isSelected);
+            return true;
+        }
+        final boolean stateChanged = updateLoadedState(position, position, isSelected);
+        if (stateChanged) {
+            mPublisher.publish(position, position, isSelected);
+        }
+        return stateChanged;
+    }
+
+    void applyRangeState(int fromInclusive, int toInclusive, boolean isSelected) {
+        if (!mEnabled) {
+            mCallback.updateSelectRangeState(fromInclusive, toInclusive, isSelected);
+            mPublisher.publish(fromInclusive, toInclusive, isSelected);
+            return;
+        }
+        // Split the range into runs of loaded and unloaded items.
+        int runStart = fromInclusive;
+        while (runStart <= toInclusive) {
+            final int runEnd = mCallback.findLoadStateRunEnd(runStart, toInclusive);
+            applyRunState(runStart, runEnd, mCallback.isItemLoaded(runStart), isSelected);
+            runStart = runEnd + 1;
+        }
+    }
+
+    void onItemRangeInserted(int positionStart, int itemCount) {
+        if (hasStates()) {
+            mSelected.insertRange(positionStart, itemCount);
+            mUnselected.insertRange(positionStart, itemCount);
+        }
+    }
+
+    void onItemRangeRemoved(int positionStart, int itemCount) {
+        if (hasStates()) {
+            mSelected.removeRange(positionStart, itemCount);
+            mUnselected.removeRange(positionStart, itemCount);
+        }
+    }
+
+    void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        if (hasStates()) {
+            moveState(mSelected, fromPosition, toPosition, itemCount);
+            moveState(mUnselected, fromPosition, toPosition, itemCount);
+        }
+    }
+
+    /**
+     * Move the state of an item, RecyclerView moves one item at a time.
+     */
+    static void moveState(SelectionBitmap positions, int fromPosition, int toPosition,
+            int itemCount) {
+        final boolean selected = positions.contains(fromPosition);
+        positions.removeRange(fromPosition, itemCount);
+        positions.insertRange(toPosition, itemCount);
+        positions.set(toPosition, selected);
+    }
+
+    private void applyRunState(int fromInclusive, int toInclusive, boolean loaded,
+            boolean isSelected) {
+        if (!loaded) {
+            // Published once it's resolved.
+            setPendingState(fromInclusive, toInclusive, isSelected);
+            return;
+        }
+        updateLoadedState(fromInclusive, toInclusive, isSelected);
+        mPublisher.publish(fromInclusive, toInclusive, isSelected);
+    }
+
+    private boolean updateLoadedState(int fromInclusive, int toInclusive, boolean isSelected) {
+        if (mEnabled) {
+            // The new state overrides the one kept before the item was loaded.
+            mSelected.setRange(fromInclusive, toInclusive, false);
+            mUnselected.setRange(fromInclusive, toInclusive, false);
+        }
+        if (fromInclusive == toInclusive) {
+            return mCallback.updateSelectState(fromInclusive, isSelected);
+        }
+        mCallback.updateSelectRangeState(fromInclusive, toInclusive, isSelected);
+        return true;
+    }
+
+    private void setPendingState(int fromInclusive, int toInclusive, boolean isSelected) {
+        mSelected.setRange(fromInclusive, toInclusive, isSelected);
+        mUnselected.setRange(fromInclusive, toInclusive, !isSelected);
+        mCallback.updatePendingRangeState(fromInclusive, toInclusive, isSelected);
+    }
+
+    /**
+     * Passes the pending states of the loaded items on, runs of loaded items together.
+     */
+    private class Resolver implements SelectionBitmap.RunVisitor {
+        private int[] mRuns = new int[16];
+        private int mRunCount;
+        /**
+         * Whether it's resolving, the adapter may notify the change of the resolved items
+         * in between.
+         */
+        private boolean mResolving;
+
+        void resolve(SelectionBitmap pending, boolean isSelected, int fromInclusive,
+                int toInclusive) {
+            if (mResolving || pending.isEmpty()) {
+                return;
+            }
+            mResolving = true;
+            // Collect the runs first, the pending states change while resolving.
+            mRunCount = 0;
+            pending.forEachRun(fromInclusive, toInclusive, this);
+            for (int i = 0; i < mRunCount; i++) {
+                final int runEnd = mRuns[2 * i + 1];
+                int start = mRuns[2 * i];
+                while (start <= runEnd) {
+                    final int end = mCallback.findLoadStateRunEnd(start, runEnd);
+                    if (mCallback.isItemLoaded(start)) {
+                        pending.setRange(start, end, false);
+                        mCallback.updateSelectRangeState(start, end, isSelected);
+                        mPublisher.publish(start, end, isSelected);
+                    }
+                    start = end + 1;
+                }
+            }
+            mResolving = false;
+        }
+
+        @Override
+        public void onRun(int fromInclusive, int toInclusive) {
+            if (2 * mRunCount + 2 > mRuns.length) {
+                mRuns = Arrays.copyOf(mRuns, mRuns.length * 2);
+            }
+            mRuns[2 * mRunCount] = fromInclusive;
+            mRuns[2 * mRunCount + 1] = toInclusive;
+            mRunCount++;
+        }
+    }
+}
@@ -18,23 +18,38 @@
 package com.mupceet.dragmultiselect;
 
 import android.content.res.Resources;
-import android.os.SystemClock;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.Choreographer;
+import android.view.Display;
 import android.view.MotionEvent;
 import android.view.View;
 
 import androidx.annotation.CallSuper;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.os.TraceCompat;
 import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.RecyclerView.OnItemTouchListener;
+import androidx.recyclerview.widget.StaggeredGridLayoutManager;
+
+import com.mupceet.dragmultiselect.core.AutoScroller;
+import com.mupceet.dragmultiselect.core.EdgeVelocityCalculator;
+import com.mupceet.dragmultiselect.core.GestureMetrics;
+import com.mupceet.dragmultiselect.core.GestureTrace;
+import com.mupceet.dragmultiselect.core.Logger;
+import com.mupceet.dragmultiselect.core.SelectionBitmap;
+import com.mupceet.dragmultiselect.core.SelectionEngine;
+import com.mupceet.dragmultiselect.core.SelectionListener;
+import com.mupceet.dragmultiselect.core.SelectionPipeline;
+import com.mupceet.dragmultiselect.core.VelocityInterpolator;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -77,41 +92,27 @@ import java.util.Set;
  * </ul>
  */
 public class DragMultiSelectHelper {
-    public static final float NO_MAX = Float.MAX_VALUE;
-    public static final float NO_MIN = 0;
-    public static final float RELATIVE_UNSPECIFIED = 0;
+    public static final float NO_MAX = EdgeVelocityCalculator.NO_MAX;
+    public static final float NO_MIN = EdgeVelocityCalculator.NO_MIN;
+    public static final float RELATIVE_UNSPECIFIED = EdgeVelocityCalculator.RELATIVE_UNSPECIFIED;
     private static final int HORIZONTAL = RecyclerView.HORIZONTAL;
     private static final int VERTICAL = RecyclerView.VERTICAL;
 
-    /*
-     *                       !autoChangeState           +-------------------+  inactiveSlideSelect()
-     *           +------------------------------------> |                   | <--------------------+
-     *           |                                      |      Normal       |                      |
-     *           |        activeDragSelect(position)    |                   | activeSlideSelect()  |
-     *           |      +------------------------------ |                   | ----------+          |
-     *           |      v                               +-------------------+           v          |
-     *  +-------------------+               autoChangeState                   +-----------------------+
-     *  | Drag From Normal  | ----------------------------------------------> |                       |
-     *  +-------------------+                                                 |                       |
-     *  |                   |                                                 |                       |
-     *  |                   | activeDragSelect(position) && allowDragInSlide  |        Slide          |
-     *  |                   | <---------------------------------------------- |                       |
-     *  |  Drag From Slide  |                                                 |                       |
-     *  |                   |                                                 |                       |
-     *  |                   | ----------------------------------------------> |                       |
-     *  +-------------------+                                                 +-----------------------+
-     */
-    private static final int SELECT_STATE_NORMAL = 0x00;
-    private static final int SELECT_STATE_SLIDE = 0x01;
-    private static final int SELECT_STATE_DRAG_FROM_NORMAL = 0x10;
-    private static final int SELECT_STATE_DRAG_FROM_SLIDE = 0x11;
-
     private static final int DEFAULT_MIN_VELOCITY_DP = 315;
     private static final int DEFAULT_MAX_VELOCITY_DP = 1575;
     private static final float DEFAULT_RELATIVE_VELOCITY = 1f;
     private static final float DEFAULT_MAX_EDGE = NO_MAX;
     private static final float DEFAULT_RELATIVE_EDGE = 0.2f;
     private static final EdgeType DEFAULT_EDGE_TYPE = EdgeType.INSIDE_EXTEND;
+    private static final String TRACE_SCROLL_FRAME_TAG = "DMSH ScrollFrame";
+    private static final String TRACE_HIT_TEST_TAG = "DMSH HitTest";
+    private static final String TRACE_UPDATE_TAG = "DMSH UpdateSelectedRange";
+    private static final String TRACE_FLUSH_TAG = "DMSH FlushSelection";
+
+    static {
+        // Keep the sink installed by the app or a test, if any.
+        Logger.setDefaultSink(new AndroidLogSink());
+    }
 
     private final AutoScroller mScroller = new AutoScroller(new AutoScroller.ScrollStateChangeListener() {
         @Override
@@ -122,16 +123,20 @@ public class DragMultiSelectHelper {
                         Logger.e("startAutoScroll：Host view has been cleared.");
                         return;
                     }
-                    Logger.d("mScrollRunnable post");
-                    mRecyclerView.post(mScrollRunnable);
+                    Logger.d("scroll frame driver start");
+                    mFrameDriver.start(mRecyclerView);
                     break;
                 case SCROLL_STOPPING:
                     if (mRecyclerView == null) {
                         Logger.e("stopAutoScroll：Host view has been cleared.");
                         return;
                     }
-                    Logger.d("mScrollRunnable remove");
-                    mRecyclerView.removeCallbacks(mScrollRunnable);
+                    Logger.d("scroll frame driver stop");
+                    mFrameDriver.stop();
+                    mGestureMetrics.stopFrames();
+                    if (mPrefetcher != null) {
+                        mPrefetcher.stop();
+                    }
                     break;
                 case SCROLL_IDLE:
                 default:
@@ -140,77 +145,234 @@ public class DragMultiSelectHelper {
             }
         }
     });
-    private final SelectionRecorder mSelectionRecorder = new SelectionRecorder();
-    /**
-     * Edge insets used to activate auto-scrolling.
-     */
-    private float mHotspotRelativeEdges = RELATIVE_UNSPECIFIED;
+    private final EdgeVelocityCalculator mEdgeVelocityCalculator = new EdgeVelocityCalculator();
     /**
-     * Clamping values for edge insets used to activate auto-scrolling.
+     * Developer callback which controls the behavior of DragSelectTouchHelper.
      */
-    private float mHotspotMaximumEdges = NO_MAX;
+    @NonNull
+    private final Callback mCallback;
+    @NonNull
+    private final SelectionEngine mSelectionEngine;
+    private final float[] mLastTouchPosition = new float[]{Float.MIN_VALUE, Float.MIN_VALUE};
+    private RecyclerView mRecyclerView = null;
     /**
-     * Relative scrolling velocity at maximum edge distance.
+     * Set by the developer, or null to pick a built-in one by the layout manager.
      */
-    private float mRelativeVelocity = RELATIVE_UNSPECIFIED;
+    @Nullable
+    private LayoutStrategy mCustomLayoutStrategy;
     /**
-     * Clamping values used for scrolling velocity.
+     * Supplies the scroll axis and finds the item under the touch point.
      */
-    private float mMinimumVelocity = NO_MIN;
+    @NonNull
+    private LayoutStrategy mLayoutStrategy = new LinearLayoutStrategy();
     /**
-     * Clamping values used for scrolling velocity.
+     * The layout manager which the layout strategy is picked for.
      */
-    private float mMaximumVelocity = NO_MAX;
+    private RecyclerView.LayoutManager mLayoutStrategyOwner;
     /**
-     * Developer callback which controls the behavior of DragSelectTouchHelper.
+     * Finds the item under the touch point instead of the layout strategy if set.
      */
-    @NonNull
-    private final Callback mCallback;
-    private final float[] mLastTouchPosition = new float[]{Float.MIN_VALUE, Float.MIN_VALUE};
-    private RecyclerView mRecyclerView = null;
+    @Nullable
+    private ItemPositionResolver mItemPositionResolver;
     private int mDirection = VERTICAL;
-    private final Runnable mScrollRunnable = new Runnable() {
+    private final ScrollFrameListener mScrollFrameListener = new ScrollFrameListener() {
         @Override
-        public void run() {
+        public boolean onScrollFrame(long frameTimeNanos) {
             if (mRecyclerView == null) {
-                Logger.i("mScrollRunnable run: Host view has been cleared.");
-                return;
+                Logger.i("onScrollFrame: Host view has been cleared.");
+                return false;
             }
             final AutoScroller scroller = mScroller;
             if (!scroller.isScrolling()) {
-                return;
+                return false;
             }
 
-            scrollBy(scroller.getDelta());
-            ViewCompat.postOnAnimation(mRecyclerView, this);
+            TraceCompat.beginSection(TRACE_SCROLL_FRAME_TAG);
+            final MetricsListener metricsListener = mMetricsListener;
+            final long startNanos = metricsListener != null ? System.nanoTime() : 0;
+            final int delta = scroller.getDelta(frameTimeNanos);
+            if (mGestureTrace != null) {
+                mGestureTrace.record(GestureTrace.TYPE_SCROLL, frameTimeNanos, delta, 0, 0);
+            }
+            if (Math.abs(scroller.getVelocity()) < mJumpScrollVelocity
+                    || !jumpBy(mRecyclerView, delta)) {
+                scrollBy(delta);
+            }
+            // Already in a frame, flush now rather than in the next one.
+            flushSelectionUpdates();
+            if (mPrefetcher != null) {
+                mPrefetcher.update(mRecyclerView, scroller.getVelocity(), mDirection);
+            }
+            if (metricsListener != null) {
+                final long durationNanos = System.nanoTime() - startNanos;
+                startGestureMetrics();
+                metricsListener.onScrollFrame(frameTimeNanos, durationNanos,
+                        mGestureMetrics.recordFrame(frameTimeNanos, durationNanos));
+            }
+            TraceCompat.endSection();
+            return true;
         }
     };
     /**
-     * Start of the slide area.
+     * Flushes the coalesced selection changes in the next frame.
      */
-    private float mSlideAreaStart;
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFlushScheduled = false;
+            TraceCompat.beginSection(TRACE_FLUSH_TAG);
+            mSelectionEngine.flushPendingUpdates();
+            TraceCompat.endSection();
+            rememberStableIds();
+        }
+    };
+    private boolean mFlushScheduled;
     /**
-     * End of the slide area.
+     * Whether the scrolling velocity scales with the length of the list.
      */
-    private float mSlideAreaEnd;
+    private boolean mAdaptiveVelocity;
+    /**
+     * Velocity from which the auto scroll jumps by positions, in pixels per millisecond.
+     */
+    private float mJumpScrollVelocity = NO_MAX;
+    @Nullable
+    private MetricsListener mMetricsListener;
+    private final GestureMetrics mGestureMetrics = new GestureMetrics();
+    private boolean mGestureMetricsStarted;
+    @Nullable
+    private GestureTrace mGestureTrace;
+    /**
+     * Id of the pointer which drives the selection.
+     */
+    private int mActivePointerId = MotionEvent.INVALID_POINTER_ID;
+    /**
+     * Whether a second finger can extend the selection to the item under it at once.
+     */
+    private boolean mTwoFingerRangeSelection;
+    /**
+     * Whether the selection of the current gesture was extended by a second finger.
+     */
+    private boolean mExtendedByPointer;
+    /**
+     * Whether to enter the slide state restored before attached.
+     */
+    private boolean mPendingSlideState;
+    /**
+     * The dispatched position count of the selection engine when the gesture started.
+     */
+    private long mGestureStartPositionCount;
+    /**
+     * Whether to process the historical samples batched into move events.
+     */
+    private boolean mProcessHistoricalSamples;
+    /**
+     * Whether to select a rectangle of a grid instead of a range of positions.
+     */
+    private boolean mBoxSelection;
+    /**
+     * Whether to follow the selection by stable ids when the data set changes without
+     * positions.
+     */
+    private boolean mStableIdTracking;
+    /**
+     * Stable ids of the first selected item and the end of the dispatched range.
+     */
+    private long mStartItemId = RecyclerView.NO_ID;
+    private long mEndItemId = RecyclerView.NO_ID;
+    /**
+     * The adapter observed while selecting, to remap the selection when the data changes.
+     */
+    @Nullable
+    private RecyclerView.Adapter<?> mObservedAdapter;
+    private final RecyclerView.AdapterDataObserver mAdapterDataObserver =
+            new RecyclerView.AdapterDataObserver() {
+                @Override
+                public void onChanged() {
+                    invalidateItemPositions();
+                    if (mStableIdTracking) {
+                        relocateByStableIds();
+                    }
+                    resolvePendingStates(0, Integer.MAX_VALUE);
+                }
+
+                @Override
+                public void onItemRangeChanged(int positionStart, int itemCount) {
+                    invalidateItemPositions();
+                    resolvePendingStates(positionStart, positionStart + itemCount - 1);
+                }
+
+                @Override
+                public void onItemRangeInserted(int positionStart, int itemCount) {
+                    invalidateItemPositions();
+                    mSelectionEngine.onItemRangeInserted(positionStart, itemCount);
+                    if (mCallback instanceof AdvanceCallback) {
+                        ((AdvanceCallback<?>) mCallback).onItemRangeInserted(positionStart,
+                                itemCount);
+                    }
+                    rememberStableIds();
+                }
+
+                @Override
+                public void onItemRangeRemoved(int positionStart, int itemCount) {
+                    invalidateItemPositions();
+                    mSelectionEngine.onItemRangeRemoved(positionStart, itemCount);
+                    if (mCallback instanceof AdvanceCallback) {
+                        ((AdvanceCallback<?>) mCallback).onItemRangeRemoved(positionStart,
+                                itemCount);
+                    }
+                    rememberStableIds();
+                }
+
+                @Override
+                public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                    invalidateItemPositions();
+                    mSelectionEngine.onItemRangeMoved(fromPosition, toPosition, itemCount);
+                    if (mCallback instanceof AdvanceCallback) {
+                        ((AdvanceCallback<?>) mCallback).onItemRangeMoved(fromPosition,
+                                toPosition, itemCount);
+                    }
+                    rememberStableIds();
+                }
+            };
+    /**
+     * Drop the cached item positions whenever the children may have moved: a layout pass may
+     * move any child, not only the first or the last one, and so may a scroll which is not
+     * driven by the auto scroll.
+     */
+    private final View.OnLayoutChangeListener mOnLayoutChangeListener =
+            new View.OnLayoutChangeListener() {
+                @Override
+                public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                           int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                    invalidateItemPositions();
+                }
+            };
+    private final RecyclerView.OnScrollListener mOnScrollListener =
+            new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                    invalidateItemPositions();
+                }
+            };
     /**
-     * The type of edge being used.
+     * Prepares ViewHolders ahead of the auto scroll if enabled.
      */
-    private EdgeType mEdgeType;
+    @Nullable
+    private ViewHolderPrefetcher mPrefetcher;
     /**
-     * Whether should auto enter slide mode after drag select finished.
+     * Drives the auto scroll frame by frame.
      */
-    private boolean mShouldAutoChangeState;
+    @NonNull
+    private ScrollFrameDriver mFrameDriver = new ChoreographerFrameDriver(mScrollFrameListener);
+    private FrameSource mFrameSource = FrameSource.CHOREOGRAPHER;
     /**
-     * Whether can drag selection in slide select mode.
+     * Start of the slide area.
      */
-    private boolean mIsAllowDragInSlideState;
+    private float mSlideAreaStart;
     /**
-     * The current mode of selection.
+     * End of the slide area.
      */
-    private int mSelectState = SELECT_STATE_NORMAL;
-    private int mSlideStateStartPosition = RecyclerView.NO_POSITION;
-    private boolean mHaveCalledSelectStart = false;
+    private float mSlideAreaEnd;
     private final OnItemTouchListener mOnItemTouchListener = new OnItemTouchListener() {
         @Override
         public boolean onInterceptTouchEvent(@NonNull RecyclerView rv, @NonNull MotionEvent e) {
@@ -221,43 +383,39 @@ public class DragMultiSelectHelper {
             boolean intercept = false;
             int action = e.getAction();
             int actionMask = action & MotionEvent.ACTION_MASK;
-            // It seems that it's unnecessary to process multiple pointers.
+            traceMotionEvent(e, actionMask);
             switch (actionMask) {
                 case MotionEvent.ACTION_DOWN:
+                    mActivePointerId = e.getPointerId(0);
+                    mExtendedByPointer = false;
                     // call the selection start's callback before moving
-                    if (mSelectState == SELECT_STATE_SLIDE && isInSlideArea(e)) {
-                        mSlideStateStartPosition = getItemPosition(rv, e.getX(), e.getY());
-                        if (mSlideStateStartPosition != RecyclerView.NO_POSITION) {
-                            intercept = true;
-                            mCallback.onSelectStart(mSlideStateStartPosition);
-                            mHaveCalledSelectStart = true;
-                        }
+                    if (mSelectionEngine.isSlideState() && isInSlideArea(e)) {
+                        updateBoxSelection(rv);
+                        intercept = mSelectionEngine.startSlideSelect(
+                                getItemPosition(rv, e.getX(), e.getY()));
                     }
                     break;
                 case MotionEvent.ACTION_MOVE:
-                    if (mSelectState == SELECT_STATE_DRAG_FROM_NORMAL
-                            || mSelectState == SELECT_STATE_DRAG_FROM_SLIDE) {
+                    if (mSelectionEngine.isDragState()) {
                         Logger.i("onInterceptTouchEvent: move in drag mode");
                         intercept = true;
                     }
                     break;
+                case MotionEvent.ACTION_POINTER_DOWN:
+                    intercept = onPointerDown(rv, e);
+                    break;
+                case MotionEvent.ACTION_POINTER_UP:
+                    onPointerUp(e);
+                    break;
                 case MotionEvent.ACTION_CANCEL:
                     // finger is lifted before moving
                     Logger.i("onInterceptTouchEvent: finger is lifted before moving");
                     // fall through
                 case MotionEvent.ACTION_UP:
-                    if (mSelectState == SELECT_STATE_DRAG_FROM_NORMAL
-                            || mSelectState == SELECT_STATE_DRAG_FROM_SLIDE) {
+                    if (mSelectionEngine.isDragState()) {
                         intercept = true;
                     }
-                    if (mSlideStateStartPosition != RecyclerView.NO_POSITION) {
-                        selectFinished(mSlideStateStartPosition);
-                        mSlideStateStartPosition = RecyclerView.NO_POSITION;
-                    }
-                    // selection has triggered
-                    if (mSelectionRecorder.startPosition() != RecyclerView.NO_POSITION) {
-                        selectFinished(mSelectionRecorder.endPosition());
-                    }
+                    mSelectionEngine.onGestureEndBeforeIntercept();
                     break;
                 default:
                     // do nothing
@@ -271,6 +429,7 @@ public class DragMultiSelectHelper {
 
         @Override
         public void onTouchEvent(@NonNull RecyclerView rv, @NonNull MotionEvent e) {
+            traceMotionEvent(e, e.getAction() & MotionEvent.ACTION_MASK);
             if (!isSelectActivated()) {
                 Logger.i("onTouchEvent: not active");
                 return;
@@ -279,49 +438,33 @@ public class DragMultiSelectHelper {
             int actionMask = action & MotionEvent.ACTION_MASK;
             switch (actionMask) {
                 case MotionEvent.ACTION_MOVE:
-                    if (mSlideStateStartPosition != RecyclerView.NO_POSITION) {
+                    final int pointerIndex = getActivePointerIndex(e);
+                    if (pointerIndex < 0) {
+                        // The range is done by two fingers, wait for the anchor to lift.
+                        break;
+                    }
+                    if (mSelectionEngine.commitSlideSelect()) {
                         Logger.i("onTouchEvent: move after slide mode down");
-                        selectFirstItem(mSlideStateStartPosition);
-                        // selection is triggered
-                        mSlideStateStartPosition = RecyclerView.NO_POSITION;
                     }
-                    if (mDirection == HORIZONTAL) {
-                        float downY = e.getY();
-                        int paddingBottom = rv.getHeight() - rv.getPaddingBottom();
-                        // we need Y position to find item.
-                        if (downY < rv.getPaddingTop()) {
-                            mLastTouchPosition[VERTICAL] = rv.getPaddingTop();
-                        } else if (downY > paddingBottom) {
-                            mLastTouchPosition[VERTICAL] = paddingBottom;
-                        } else {
-                            mLastTouchPosition[VERTICAL] = downY;
-                        }
-                        // it will record X position.
-                        computeTargetVelocity(HORIZONTAL, e.getX(), rv.getWidth());
-                    } else {
-                        float downX = e.getX();
-                        int paddingRight = rv.getWidth() - rv.getPaddingRight();
-                        // we need X position to find item.
-                        if (downX < rv.getPaddingLeft()) {
-                            mLastTouchPosition[HORIZONTAL] = rv.getPaddingLeft();
-                        } else if (downX > paddingRight) {
-                            mLastTouchPosition[HORIZONTAL] = paddingRight;
-                        } else {
-                            mLastTouchPosition[HORIZONTAL] = downX;
+                    if (mProcessHistoricalSamples) {
+                        // Samples batched into this event since the last one, oldest first.
+                        final int historySize = e.getHistorySize();
+                        for (int h = 0; h < historySize; h++) {
+                            onMoveSample(rv, e.getHistoricalX(pointerIndex, h),
+                                    e.getHistoricalY(pointerIndex, h));
                         }
-                        // it will record Y position.
-                        computeTargetVelocity(VERTICAL, e.getY(), rv.getHeight());
                     }
+                    onMoveSample(rv, e.getX(pointerIndex), e.getY(pointerIndex));
+                    break;
+                case MotionEvent.ACTION_POINTER_DOWN:
+                    onPointerDown(rv, e);
+                    break;
+                case MotionEvent.ACTION_POINTER_UP:
+                    onPointerUp(e);
                     break;
                 case MotionEvent.ACTION_CANCEL:
                 case MotionEvent.ACTION_UP:
-                    if (mSlideStateStartPosition != RecyclerView.NO_POSITION) {
-                        selectFirstItem(mSlideStateStartPosition);
-                        // selection is triggered
-                        mSlideStateStartPosition = RecyclerView.NO_POSITION;
-                        Logger.i("onTouchEvent: up/cancel after slide mode down");
-                    }
-                    selectFinished(mSelectionRecorder.endPosition());
+                    mSelectionEngine.onGestureEnd();
                     break;
                 default:
                     // do nothing
@@ -346,6 +489,28 @@ public class DragMultiSelectHelper {
      */
     public DragMultiSelectHelper(@NonNull Callback callback) {
         mCallback = callback;
+        mSelectionEngine = new SelectionEngine(callback);
+        mSelectionEngine.setStateListener(new SelectionEngine.StateListener() {
+            @Override
+            public void onSelectStateChange(int before, int after) {
+                if (after == SelectionEngine.SELECT_STATE_NORMAL) {
+                    if (!hasPendingStates()) {
+                        stopObservingAdapter();
+                    }
+                } else {
+                    observeAdapter();
+                }
+            }
+
+            @Override
+            public void onSelectFinished() {
+                cancelScheduledFlush();
+                finishGestureMetrics();
+                mScroller.setVelocity(0);
+                mLastTouchPosition[HORIZONTAL] = Float.MIN_VALUE;
+                mLastTouchPosition[VERTICAL] = Float.MIN_VALUE;
+            }
+        });
         DisplayMetrics mDisplayMetrics = Resources.getSystem().getDisplayMetrics();
 
         setEdgeType(DEFAULT_EDGE_TYPE);
@@ -362,12 +527,13 @@ public class DragMultiSelectHelper {
     }
 
     /**
-     * Enable or disable debug logs.
+     * Enable or disable debug and info logs. They are removed from minified builds by the
+     * consumer ProGuard rules of the library, only the error logs are kept.
      *
      * @param debug Indicates debug state.
      */
     public static void withDebug(boolean debug) {
-        Logger.sDebug = debug;
+        Logger.setDebug(debug);
     }
 
     /**
@@ -385,11 +551,83 @@ public class DragMultiSelectHelper {
         }
         if (mRecyclerView != null) {
             mRecyclerView.removeOnItemTouchListener(mOnItemTouchListener);
+            mRecyclerView.removeOnLayoutChangeListener(mOnLayoutChangeListener);
+            mRecyclerView.removeOnScrollListener(mOnScrollListener);
+            stopObservingAdapter();
+            mSelectionEngine.flushPendingUpdates();
+            cancelScheduledFlush();
+            if (mPrefetcher != null) {
+                mPrefetcher.stop();
+            }
         }
         mRecyclerView = recyclerView;
+        invalidateItemPositions();
         if (mRecyclerView != null) {
             mRecyclerView.addOnItemTouchListener(mOnItemTouchListener);
+            mRecyclerView.addOnLayoutChangeListener(mOnLayoutChangeListener);
+            mRecyclerView.addOnScrollListener(mOnScrollListener);
+            if (hasPendingStates()) {
+                observeAdapter();
+            }
+            if (mPendingSlideState && mRecyclerView.getLayoutManager() != null) {
+                mPendingSlideState = false;
+                activeSlideSelect();
+            }
+        }
+    }
+
+    /**
+     * Saves the select state, the slide area and, if the callback is an
+     * {@link AdvanceCallback} which supplies
+     * {@link AdvanceCallback#currentSelectedPositions()}, the selected positions encoded by
+     * {@link SelectionBitmap#toByteArray()}. A selection made of a few ranges takes a few
+     * bytes whatever the number of items. A selection in progress is not saved since the
+     * finger is gone once restored, but the slide state it returns to is.
+     *
+     * @return The state to put into the saved instance state of the host.
+     */
+    @NonNull
+    public Parcelable onSaveInstanceState() {
+        SelectionBitmap selectedPositions = null;
+        if (mCallback instanceof AdvanceCallback) {
+            selectedPositions = ((AdvanceCallback<?>) mCallback).currentSelectedPositions();
+        }
+        final int state = mSelectionEngine.getSelectState();
+        // A drag returns to the slide state when it ends, unless it's started from the
+        // normal state without auto entering the slide state.
+        final boolean slideState = state == SelectionEngine.SELECT_STATE_SLIDE
+                || state == SelectionEngine.SELECT_STATE_DRAG_FROM_SLIDE
+                || (state == SelectionEngine.SELECT_STATE_DRAG_FROM_NORMAL
+                && mSelectionEngine.isAutoEnterSlideState());
+        return new SavedState(slideState, mSlideAreaStart, mSlideAreaEnd,
+                selectedPositions == null ? null : selectedPositions.toByteArray());
+    }
+
+    /**
+     * Restores the state saved by {@link #onSaveInstanceState()}. The slide state is entered
+     * again once the helper is attached to a RecyclerView with a layout manager.
+     *
+     * @param state The saved state, ignored if null or not saved by this helper.
+     * @return The saved selected positions for the host to restore its selection, or null if
+     * none were saved.
+     */
+    @Nullable
+    public SelectionBitmap onRestoreInstanceState(@Nullable Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            return null;
         }
+        final SavedState savedState = (SavedState) state;
+        mSlideAreaStart = savedState.mSlideAreaStart;
+        mSlideAreaEnd = savedState.mSlideAreaEnd;
+        if (savedState.mSlideState && !isSelectActivated()) {
+            if (mRecyclerView != null && mRecyclerView.getLayoutManager() != null) {
+                activeSlideSelect();
+            } else {
+                mPendingSlideState = true;
+            }
+        }
+        return savedState.mSelectedPositions == null
+                ? null : SelectionBitmap.fromByteArray(savedState.mSelectedPositions);
     }
 
     /**
@@ -412,13 +650,8 @@ public class DragMultiSelectHelper {
      * Exit the selection mode.
      */
     public void inactiveSelect() {
-        if (isSelectActivated()) {
-            selectFinished(mSelectionRecorder.endPosition());
-        } else {
-            selectFinished(RecyclerView.NO_POSITION);
-        }
-        Logger.logSelectStateChange(mSelectState, SELECT_STATE_NORMAL);
-        mSelectState = SELECT_STATE_NORMAL;
+        mPendingSlideState = false;
+        mSelectionEngine.inactiveSelect();
     }
 
     /**
@@ -427,7 +660,7 @@ public class DragMultiSelectHelper {
      * @return true if is in the selection mode.
      */
     public boolean isSelectActivated() {
-        return (mSelectState != SELECT_STATE_NORMAL);
+        return mSelectionEngine.isSelectActivated();
     }
 
     /**
@@ -445,7 +678,7 @@ public class DragMultiSelectHelper {
      * @see EdgeType
      */
     public DragMultiSelectHelper setEdgeType(EdgeType type) {
-        mEdgeType = type;
+        mEdgeVelocityCalculator.setExtendBeyondEdges(type == EdgeType.INSIDE_EXTEND);
         return this;
     }
 
@@ -461,7 +694,7 @@ public class DragMultiSelectHelper {
      * @return The scroll helper, which may used to chain setter calls.
      */
     public DragMultiSelectHelper setRelativeHotspotEdges(float ratio) {
-        mHotspotRelativeEdges = ratio;
+        mEdgeVelocityCalculator.setRelativeHotspotEdges(ratio);
         return this;
     }
 
@@ -479,7 +712,7 @@ public class DragMultiSelectHelper {
      * @return The scroll helper, which may used to chain setter calls.
      */
     public DragMultiSelectHelper setMaximumHotspotEdges(float maximumHotspotEdges) {
-        mHotspotMaximumEdges = maximumHotspotEdges;
+        mEdgeVelocityCalculator.setMaximumHotspotEdges(maximumHotspotEdges);
         return this;
     }
 
@@ -496,7 +729,7 @@ public class DragMultiSelectHelper {
      * @return The scroll helper, which may used to chain setter calls.
      */
     public DragMultiSelectHelper setRelativeVelocity(float velocity) {
-        mRelativeVelocity = velocity / 1000f;
+        mEdgeVelocityCalculator.setRelativeVelocity(velocity);
         return this;
     }
 
@@ -511,7 +744,7 @@ public class DragMultiSelectHelper {
      * @return The scroll helper, which may used to chain setter calls.
      */
     public DragMultiSelectHelper setMinimumVelocity(float velocity) {
-        mMinimumVelocity = velocity / 1000f;
+        mEdgeVelocityCalculator.setMinimumVelocity(velocity);
         return this;
     }
 
@@ -528,7 +761,114 @@ public class DragMultiSelectHelper {
      * @return The scroll helper, which may used to chain setter calls.
      */
     public DragMultiSelectHelper setMaximumVelocity(float velocity) {
-        mMaximumVelocity = velocity / 1000f;
+        mEdgeVelocityCalculator.setMaximumVelocity(velocity);
+        return this;
+    }
+
+    /**
+     * Sets how the depth of the touch point in the hotspot area maps to the scrolling
+     * velocity, one of {@link VelocityInterpolator#LINEAR}, which is the default value,
+     * {@link VelocityInterpolator#QUADRATIC}, {@link VelocityInterpolator#EXPONENTIAL} or a
+     * custom one.
+     *
+     * @param interpolator The interpolator to use.
+     * @return The scroll helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setVelocityInterpolator(@NonNull VelocityInterpolator interpolator) {
+        mEdgeVelocityCalculator.setInterpolator(interpolator);
+        return this;
+    }
+
+    /**
+     * Sets the time to reach the target velocity after the auto scroll starts or turns
+     * around. The velocity eases out to the target, so a fast scroll doesn't overshoot as soon
+     * as it starts.
+     *
+     * @param durationMillis The ramp up duration in milliseconds, 0 by default which means
+     *                       scrolling at the target velocity at once.
+     * @return The scroll helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setRampUpDuration(int durationMillis) {
+        mScroller.setRampUpDuration(durationMillis);
+        return this;
+    }
+
+    /**
+     * Makes the target and the maximum scrolling velocity scale with the length of the list,
+     * which is estimated by the item count and the average size of the laid out items, so
+     * selecting across a huge list takes bounded time instead of minutes of scrolling. The
+     * velocity never drops below the one set by {@link #setRelativeVelocity} and
+     * {@link #setMaximumVelocity}.
+     *
+     * @param durationMillis Time to scroll across the whole list at the target velocity in
+     *                       milliseconds, or 0 to disable the adaption, which is the default
+     *                       value.
+     * @return The scroll helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setAdaptiveVelocityDuration(int durationMillis) {
+        mAdaptiveVelocity = durationMillis > 0;
+        mEdgeVelocityCalculator.setAdaptiveDuration(durationMillis);
+        return this;
+    }
+
+    /**
+     * Sets the velocity from which the auto scroll jumps to the position it reaches in each
+     * frame instead of scrolling by pixels, so the rows in between, which would only flash by,
+     * are not laid out and bound. The items passed are selected as one range. It only works
+     * with {@link LinearLayoutManager} and {@link GridLayoutManager} whose items all take one
+     * span, and not in reverse layout.
+     *
+     * @param velocity The velocity in pixels per second, or {@link #NO_MAX} to always scroll
+     *                 by pixels, which is the default value.
+     * @return The scroll helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setJumpScrollVelocity(float velocity) {
+        mJumpScrollVelocity = velocity == NO_MAX ? NO_MAX : velocity / 1000f;
+        return this;
+    }
+
+    /**
+     * Sets a listener to receive the timings of the auto scroll frames and the updates of the
+     * selected range, and the totals of each gesture. The timings are only measured while a
+     * listener is set.
+     *
+     * @param listener The listener, or null to stop measuring.
+     * @return The select helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setMetricsListener(@Nullable MetricsListener listener) {
+        mMetricsListener = listener;
+        mGestureMetricsStarted = false;
+        return this;
+    }
+
+    /**
+     * Sets a trace to record the touch events, the auto scroll deltas, the select state
+     * changes and the selection callbacks into. The trace is a ring buffer of a fixed size,
+     * and it can be encoded by {@link GestureTrace#toByteArray()} and replayed through the
+     * selection engine on the JVM by {@link com.mupceet.dragmultiselect.core.TraceReplayer}.
+     *
+     * @param trace The trace to record into, or null to stop recording.
+     * @return The select helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setGestureTrace(@Nullable GestureTrace trace) {
+        mGestureTrace = trace;
+        mSelectionEngine.setTrace(trace);
+        return this;
+    }
+
+    /**
+     * Sets whether a second finger extends the selection. If enabled, while a selection is
+     * held by one finger, putting down another one selects all the items up to the item under
+     * it at once, and the selection follows the second finger after that. It's much faster
+     * than auto scrolling across a long distance. Disabled by default.
+     * <p>
+     * Once the second finger is lifted, the selection is kept until all fingers are lifted.
+     *
+     * @param enabled Whether to enable the two-finger range selection.
+     * @return The select helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setTwoFingerRangeSelection(boolean enabled) {
+        mTwoFingerRangeSelection = enabled;
         return this;
     }
 
@@ -540,7 +880,7 @@ public class DragMultiSelectHelper {
      * @return The select helper, which may used to chain setter calls.
      */
     public DragMultiSelectHelper setAutoEnterSlideState(boolean autoEnterSlideState) {
-        mShouldAutoChangeState = autoEnterSlideState;
+        mSelectionEngine.setAutoEnterSlideState(autoEnterSlideState);
         return this;
     }
 
@@ -565,148 +905,462 @@ public class DragMultiSelectHelper {
      * @return The select helper, which may used to chain setter calls.
      */
     public DragMultiSelectHelper setAllowDragInSlideState(boolean allowDragInSlideState) {
-        mIsAllowDragInSlideState = allowDragInSlideState;
+        mSelectionEngine.setAllowDragInSlideState(allowDragInSlideState);
         return this;
     }
 
-    private void activeSelectInternal(int position) {
-        if (mRecyclerView == null) {
-            throw new RuntimeException("Need to attach RecyclerView first");
-        }
+    /**
+     * Sets the resolver used to find the item under the touch point. By default the one of
+     * the {@link LayoutStrategy} is used.
+     *
+     * @param resolver The resolver to use, or {@code null} to use the layout strategy.
+     * @return The select helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setItemPositionResolver(@Nullable ItemPositionResolver resolver) {
+        mItemPositionResolver = resolver;
+        return this;
+    }
 
-        RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
-        if (layoutManager instanceof LinearLayoutManager) {
-            mDirection = ((LinearLayoutManager) layoutManager).getOrientation();
-        } else {
-            throw new RuntimeException("We only support LinearLayoutManager & GridLayoutManager");
+    /**
+     * Sets the strategy which adapts the helper to the layout manager. By default it's picked
+     * by the type of the layout manager:
+     * <ul>
+     * <li>{@link LinearLayoutStrategy} for LinearLayoutManager and GridLayoutManager.
+     * <li>{@link StaggeredGridLayoutStrategy} for StaggeredGridLayoutManager.
+     * <li>{@link ChildBoundsLayoutStrategy} for other layout managers.
+     * </ul>
+     *
+     * @param strategy The strategy to use, or {@code null} to pick one by the layout manager.
+     * @return The select helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setLayoutStrategy(@Nullable LayoutStrategy strategy) {
+        mCustomLayoutStrategy = strategy;
+        mLayoutStrategyOwner = null;
+        if (strategy != null) {
+            mLayoutStrategy = strategy;
         }
+        return this;
+    }
 
-        if (position == RecyclerView.NO_POSITION) {
-            Logger.logSelectStateChange(mSelectState, SELECT_STATE_SLIDE);
-            mSelectState = SELECT_STATE_SLIDE;
+    /**
+     * Sets the source of the frames which drive the auto scroll, one of:
+     * <ul>
+     * <li>{@link FrameSource#CHOREOGRAPHER} scrolls on every vsync, using the frame time of
+     * the display. It's the default value.
+     * <li>{@link FrameSource#ANIMATION_RUNNABLE} scrolls with a runnable posted by
+     * {@link ViewCompat#postOnAnimation(android.view.View, Runnable)}.
+     * </ul>
+     *
+     * @param source The source of frames to use.
+     * @return The select helper, which may used to chain setter calls.
+     * @see FrameSource
+     */
+    public DragMultiSelectHelper setFrameSource(@NonNull FrameSource source) {
+        if (mFrameSource == source) {
+            return this;
+        }
+        mFrameSource = source;
+        mFrameDriver.stop();
+        if (source == FrameSource.ANIMATION_RUNNABLE) {
+            mFrameDriver = new AnimationRunnableFrameDriver(mScrollFrameListener);
         } else {
-            if (!mHaveCalledSelectStart) {
-                mCallback.onSelectStart(position);
-                mHaveCalledSelectStart = true;
-            }
-            if (mSelectState == SELECT_STATE_SLIDE) {
-                if (mIsAllowDragInSlideState && selectFirstItem(position)) {
-                    Logger.logSelectStateChange(mSelectState, SELECT_STATE_DRAG_FROM_SLIDE);
-                    mSelectState = SELECT_STATE_DRAG_FROM_SLIDE;
-                }
-            } else if (mSelectState == SELECT_STATE_NORMAL) {
-                if (selectFirstItem(position)) {
-                    Logger.logSelectStateChange(mSelectState, SELECT_STATE_DRAG_FROM_NORMAL);
-                    mSelectState = SELECT_STATE_DRAG_FROM_NORMAL;
-                }
-            } else {
-                Logger.e("activeSelect in unexpected state: " + Logger.stateName(mSelectState));
-            }
+            mFrameDriver = new ChoreographerFrameDriver(mScrollFrameListener);
         }
+        if (mScroller.isScrolling() && mRecyclerView != null) {
+            mFrameDriver.start(mRecyclerView);
+        }
+        return this;
     }
 
-    private boolean selectFirstItem(int position) {
-        boolean selectFirstItemSucceed = mCallback.onSelectChange(position, true);
-        // The drag select feature is only available if the first item is available for selection
-        if (selectFirstItemSucceed) {
-            mSelectionRecorder.selectFirst(position);
+    /**
+     * Sets whether to coalesce the selection changes per frame. Disabled by default.
+     * <p>
+     * Move events may arrive several times within one frame on panels with a high touch
+     * sampling rate. If enabled, the selected range is only recorded on each event, and the
+     * net change is dispatched once per frame, followed by
+     * {@link Callback#onSelectionFlush(int, int)}. Update the data set in the callbacks and
+     * notify the adapter in {@code onSelectionFlush} to bind each changed item only once per
+     * frame.
+     *
+     * @param coalesce true to dispatch the changes once per frame.
+     * @return The select helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setCoalesceSelectionUpdates(boolean coalesce) {
+        mSelectionEngine.setCoalesceUpdates(coalesce);
+        if (!coalesce) {
+            cancelScheduledFlush();
         }
-        return selectFirstItemSucceed;
+        return this;
     }
 
-    private void selectFinished(int lastItem) {
-        if (lastItem != RecyclerView.NO_POSITION) {
-            mCallback.onSelectEnd(lastItem);
-        }
-        mSelectionRecorder.clearSelect();
+    /**
+     * Sets whether to process the historical samples batched into each move event. Disabled
+     * by default.
+     * <p>
+     * The system batches the touch samples received within one frame into a single move
+     * event. If enabled, each sample is hit tested in order, so the selected range and the
+     * auto scroll velocity follow the real path of the finger during fast flicks. Each sample
+     * costs a hit test, consider enabling {@link #setCoalesceSelectionUpdates(boolean)} as
+     * well so the changes are still dispatched once per frame.
+     *
+     * @param processHistoricalSamples true to process the historical samples.
+     * @return The select helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setProcessHistoricalSamples(boolean processHistoricalSamples) {
+        mProcessHistoricalSamples = processHistoricalSamples;
+        return this;
+    }
 
-        mHaveCalledSelectStart = false;
-        mScroller.setVelocity(0);
-        mLastTouchPosition[HORIZONTAL] = Float.MIN_VALUE;
-        mLastTouchPosition[VERTICAL] = Float.MIN_VALUE;
-        switch (mSelectState) {
-            case SELECT_STATE_DRAG_FROM_NORMAL:
-                if (mShouldAutoChangeState) {
-                    Logger.logSelectStateChange(mSelectState, SELECT_STATE_SLIDE);
-                    mSelectState = SELECT_STATE_SLIDE;
-                } else {
-                    Logger.logSelectStateChange(mSelectState, SELECT_STATE_NORMAL);
-                    mSelectState = SELECT_STATE_NORMAL;
-                }
-                break;
-            case SELECT_STATE_DRAG_FROM_SLIDE:
-                Logger.logSelectStateChange(mSelectState, SELECT_STATE_SLIDE);
-                mSelectState = SELECT_STATE_SLIDE;
-                break;
-            default:
-                // doesn't change the selection state
-                break;
-        }
+    /**
+     * Sets whether to select a rectangle of cells in a grid. Disabled by default.
+     * <p>
+     * By default the items between the first item and the current item are selected in
+     * adapter order, which wraps around the rows of a grid. If enabled, only the items in the
+     * rectangle between the two items are selected, and the changes are dispatched row by row.
+     * It only applies to a {@link GridLayoutManager} whose items all take one span, otherwise
+     * a range of positions is selected.
+     *
+     * @param boxSelection true to select a rectangle of cells.
+     * @return The select helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setBoxSelection(boolean boxSelection) {
+        mBoxSelection = boxSelection;
+        return this;
     }
 
-    private void computeTargetVelocity(int direction, float coordinate, float size) {
-        final float value = getEdgeValue(mHotspotRelativeEdges, size, mHotspotMaximumEdges, coordinate);
-        if (Float.compare(value, -1f) == 0) {
-            mLastTouchPosition[direction] = 0;
-        } else if (Float.compare(value, 1f) == 0) {
-            mLastTouchPosition[direction] = size;
-        } else {
-            mLastTouchPosition[direction] = coordinate;
-        }
-        if (value == 0) {
-            // The edge in this direction is not activated.
-            mScroller.setVelocity(0);
-        } else {
-            final float targetVelocity = mRelativeVelocity * size;
-            float velocity;
-            if (value > 0) {
-                velocity = constrain(value * targetVelocity, mMinimumVelocity, mMaximumVelocity);
-            } else {
-                velocity = -constrain(-value * targetVelocity, mMinimumVelocity, mMaximumVelocity);
+    /**
+     * Sets whether to prepare ViewHolders ahead of the auto scroll. Disabled by default.
+     * <p>
+     * If enabled, the helper looks ahead of the auto scroll by a distance proportional to the
+     * velocity, and creates the ViewHolders of the coming items in idle time, so they are
+     * taken from the {@link RecyclerView.RecycledViewPool} instead of being inflated while
+     * scrolling at high speed. The pool keeps at most 5 holders of each view type by default,
+     * raise it by {@link RecyclerView.RecycledViewPool#setMaxRecycledViews(int, int)} to
+     * prepare more of them.
+     *
+     * @param prefetch true to prepare ViewHolders ahead of the auto scroll.
+     * @return The select helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setViewHolderPrefetch(boolean prefetch) {
+        if (prefetch) {
+            if (mPrefetcher == null) {
+                mPrefetcher = new ViewHolderPrefetcher();
             }
-            mScroller.setVelocity(velocity);
+        } else if (mPrefetcher != null) {
+            mPrefetcher.stop();
+            mPrefetcher = null;
         }
+        return this;
+    }
 
+    /**
+     * Sets whether to follow the selection by the stable ids of the items when the adapter
+     * notifies a change of the whole data set, e.g. by
+     * {@link RecyclerView.Adapter#notifyDataSetChanged()}. It only applies to an adapter which
+     * {@link RecyclerView.Adapter#hasStableIds() has stable ids}. Disabled by default.
+     * <p>
+     * Items inserted, removed or moved during a selection are always followed by their
+     * positions: items inserted inside the selected range are selected, the removed ones are
+     * dropped from it, so the selection doesn't need to be cancelled when the data is
+     * updated. Without finer notifications the positions can't be remapped, if enabled the
+     * first selected item and the end of the range are looked up by their ids instead, which
+     * costs the distance they moved. The original states of the items are restored by the
+     * ids of the {@link AdvanceCallback} by default, the snapshots by positions are not
+     * remapped.
+     *
+     * @param enabled true to follow the selection by stable ids.
+     * @return The select helper, which may used to chain setter calls.
+     */
+    public DragMultiSelectHelper setStableIdTracking(boolean enabled) {
+        mStableIdTracking = enabled;
+        rememberStableIds();
+        return this;
     }
 
-    private float getEdgeValue(float relativeValue, float size, float maxValue, float current) {
-        // For now, leading and trailing edges are always the same size.
-        final float edgeSize = constrain(relativeValue * size, 0, maxValue);
-        final float valueLeading = constrainEdgeValue(current, edgeSize);
-        final float valueTrailing = constrainEdgeValue(size - current, edgeSize);
-        final float value = (valueTrailing - valueLeading);
-        final float interpolated;
-        if (value < 0) {
-            interpolated = value;
-        } else if (value > 0) {
-            interpolated = value;
-        } else {
-            return 0;
+    private void observeAdapter() {
+        final RecyclerView.Adapter<?> adapter =
+                mRecyclerView != null ? mRecyclerView.getAdapter() : null;
+        if (mObservedAdapter == adapter) {
+            return;
+        }
+        stopObservingAdapter();
+        if (adapter != null) {
+            adapter.registerAdapterDataObserver(mAdapterDataObserver);
+            mObservedAdapter = adapter;
         }
-
-        return constrain(interpolated, -1, 1);
     }
 
-    private float constrainEdgeValue(float current, float leading) {
-        if (leading == 0) {
+    private void stopObservingAdapter() {
+        if (mObservedAdapter != null) {
+            mObservedAdapter.unregisterAdapterDataObserver(mAdapterDataObserver);
+            mObservedAdapter = null;
+        }
+        mStartItemId = RecyclerView.NO_ID;
+        mEndItemId = RecyclerView.NO_ID;
+    }
+
+    /**
+     * @return Whether the callback keeps states of unloaded items, the adapter is observed to
+     * resolve them as they are loaded.
+     */
+    private boolean hasPendingStates() {
+        return mCallback instanceof AdvanceCallback
+                && ((AdvanceCallback<?>) mCallback).hasPendingStates();
+    }
+
+    private void resolvePendingStates(int fromInclusive, int toInclusive) {
+        final RecyclerView.Adapter<?> adapter = mObservedAdapter;
+        if (adapter == null || !hasPendingStates()) {
+            return;
+        }
+        ((AdvanceCallback<?>) mCallback).resolvePendingStates(fromInclusive,
+                Math.min(toInclusive, adapter.getItemCount() - 1));
+        if (!mSelectionEngine.isSelectActivated() && !hasPendingStates()) {
+            stopObservingAdapter();
+        }
+    }
+
+    /**
+     * Remember the stable ids of the selection, which can't be read once the data changed.
+     */
+    private void rememberStableIds() {
+        final RecyclerView.Adapter<?> adapter = mObservedAdapter;
+        if (!mStableIdTracking || adapter == null || !adapter.hasStableIds()) {
+            return;
+        }
+        mStartItemId = getItemIdAt(adapter, mSelectionEngine.startPosition());
+        mEndItemId = getItemIdAt(adapter, mSelectionEngine.dispatchedEndPosition());
+    }
+
+    private void relocateByStableIds() {
+        final RecyclerView.Adapter<?> adapter = mObservedAdapter;
+        if (adapter == null || !adapter.hasStableIds() || mStartItemId == RecyclerView.NO_ID) {
+            return;
+        }
+        final int start = findPositionForId(adapter, mStartItemId,
+                mSelectionEngine.startPosition());
+        if (start == RecyclerView.NO_POSITION) {
+            Logger.e("The first selected item {} is gone, keep the positions", mStartItemId);
+            return;
+        }
+        final int end = findPositionForId(adapter, mEndItemId,
+                mSelectionEngine.dispatchedEndPosition());
+        Logger.d("Relocate the selection to {}, {}", start, end);
+        mSelectionEngine.relocateSelection(start, end);
+        rememberStableIds();
+    }
+
+    private static long getItemIdAt(@NonNull RecyclerView.Adapter<?> adapter, int position) {
+        if (position < 0 || position >= adapter.getItemCount()) {
+            return RecyclerView.NO_ID;
+        }
+        return adapter.getItemId(position);
+    }
+
+    /**
+     * Find the position of an item by its stable id, searching outwards from its last
+     * position, so the cost is the distance it moved.
+     *
+     * @return The position of the item, or {@link RecyclerView#NO_POSITION} if it's gone.
+     */
+    private static int findPositionForId(@NonNull RecyclerView.Adapter<?> adapter, long id,
+            int lastPosition) {
+        if (id == RecyclerView.NO_ID) {
+            return RecyclerView.NO_POSITION;
+        }
+        final int itemCount = adapter.getItemCount();
+        final int from = Math.max(0, Math.min(lastPosition, itemCount - 1));
+        for (int distance = 0; distance < itemCount; distance++) {
+            final int after = from + distance;
+            final int before = from - distance;
+            if (after >= itemCount && before < 0) {
+                break;
+            }
+            if (after < itemCount && adapter.getItemId(after) == id) {
+                return after;
+            }
+            if (before >= 0 && distance > 0 && adapter.getItemId(before) == id) {
+                return before;
+            }
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    private void activeSelectInternal(int position) {
+        if (mRecyclerView == null) {
+            throw new RuntimeException("Need to attach RecyclerView first");
+        }
+
+        if (mRecyclerView.getLayoutManager() == null) {
+            throw new RuntimeException("Need to set LayoutManager first");
+        }
+        updateLayoutStrategy(mRecyclerView);
+        mDirection = mLayoutStrategy.getOrientation(mRecyclerView);
+
+        if (position == RecyclerView.NO_POSITION) {
+            mSelectionEngine.activeSlideSelect();
+        } else {
+            updateBoxSelection(mRecyclerView);
+            if (mMetricsListener != null) {
+                mGestureMetricsStarted = false;
+                startGestureMetrics();
+            }
+            mSelectionEngine.activeDragSelect(position);
+            rememberStableIds();
+        }
+    }
+
+    private void onMoveSample(@NonNull RecyclerView rv, float x, float y) {
+        if (mDirection == HORIZONTAL) {
+            int paddingBottom = rv.getHeight() - rv.getPaddingBottom();
+            // we need Y position to find item.
+            if (y < rv.getPaddingTop()) {
+                mLastTouchPosition[VERTICAL] = rv.getPaddingTop();
+            } else if (y > paddingBottom) {
+                mLastTouchPosition[VERTICAL] = paddingBottom;
+            } else {
+                mLastTouchPosition[VERTICAL] = y;
+            }
+            // it will record X position.
+            computeTargetVelocity(HORIZONTAL, x, rv.getWidth());
+        } else {
+            int paddingRight = rv.getWidth() - rv.getPaddingRight();
+            // we need X position to find item.
+            if (x < rv.getPaddingLeft()) {
+                mLastTouchPosition[HORIZONTAL] = rv.getPaddingLeft();
+            } else if (x > paddingRight) {
+                mLastTouchPosition[HORIZONTAL] = paddingRight;
+            } else {
+                mLastTouchPosition[HORIZONTAL] = x;
+            }
+            // it will record Y position.
+            computeTargetVelocity(VERTICAL, y, rv.getHeight());
+        }
+    }
+
+    @VisibleForTesting
+    void computeTargetVelocity(int direction, float coordinate, float size) {
+        final float value = mEdgeVelocityCalculator.getEdgeValue(size, coordinate,
+                mScroller.isScrolling());
+        if (mAdaptiveVelocity && value != 0 && !mScroller.isScrolling()
+                && mRecyclerView != null) {
+            // Measure once the scroll is about to start, not on every move.
+            mEdgeVelocityCalculator.setContentExtent(estimateContentExtent(mRecyclerView));
+        }
+        if (Float.compare(value, -1f) == 0) {
+            mLastTouchPosition[direction] = 0;
+        } else if (Float.compare(value, 1f) == 0) {
+            mLastTouchPosition[direction] = size;
+        } else {
+            mLastTouchPosition[direction] = coordinate;
+        }
+        mScroller.setVelocity(mEdgeVelocityCalculator.computeVelocity(value, size));
+    }
+
+    /**
+     * Estimates the length of the whole list as the item count times the average size per
+     * position of the laid out items.
+     */
+    private float estimateContentExtent(@NonNull RecyclerView rv) {
+        final RecyclerView.LayoutManager lm = rv.getLayoutManager();
+        return lm == null ? 0 : estimatePositionExtent(lm) * lm.getItemCount();
+    }
+
+    /**
+     * Estimates the average size per position of the laid out items, which also applies to
+     * grids as several positions share a row.
+     */
+    private float estimatePositionExtent(@NonNull RecyclerView.LayoutManager lm) {
+        final int childCount = lm.getChildCount();
+        if (childCount == 0) {
             return 0;
         }
-        if (current < leading) {
-            if (current >= 0) {
-                // Movement up to the edge is scaled.
-                return 1f - current / leading;
-            } else if (mScroller.isScrolling() && (mEdgeType == EdgeType.INSIDE_EXTEND)) {
-                // Movement beyond the edge is always maximum.
-                return 1f;
+        int minPosition = Integer.MAX_VALUE;
+        int maxPosition = Integer.MIN_VALUE;
+        int start = Integer.MAX_VALUE;
+        int end = Integer.MIN_VALUE;
+        for (int i = 0; i < childCount; i++) {
+            final View child = lm.getChildAt(i);
+            if (child == null) {
+                continue;
+            }
+            final int position = lm.getPosition(child);
+            if (position == RecyclerView.NO_POSITION) {
+                continue;
+            }
+            minPosition = Math.min(minPosition, position);
+            maxPosition = Math.max(maxPosition, position);
+            if (mDirection == VERTICAL) {
+                start = Math.min(start, lm.getDecoratedTop(child));
+                end = Math.max(end, lm.getDecoratedBottom(child));
+            } else {
+                start = Math.min(start, lm.getDecoratedLeft(child));
+                end = Math.max(end, lm.getDecoratedRight(child));
             }
         }
-        return 0;
+        if (minPosition > maxPosition || end <= start) {
+            return 0;
+        }
+        return (float) (end - start) / (maxPosition - minPosition + 1);
     }
 
-    private float constrain(float value, float min, float max) {
-        if (value > max) {
-            return max;
-        } else return Math.max(value, min);
+    /**
+     * Scrolls by jumping to the position which the delta reaches, and selects the items passed
+     * by the touch point as one range since the children are only laid out in the next frame.
+     *
+     * @return Whether it jumped, false if it should scroll by pixels.
+     */
+    private boolean jumpBy(@NonNull RecyclerView rv, int delta) {
+        final RecyclerView.LayoutManager layoutManager = rv.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager)) {
+            return false;
+        }
+        final LinearLayoutManager lm = (LinearLayoutManager) layoutManager;
+        if (lm.getReverseLayout() || (mDirection == HORIZONTAL
+                && lm.getLayoutDirection() == ViewCompat.LAYOUT_DIRECTION_RTL)) {
+            return false;
+        }
+        int span = 1;
+        if (lm instanceof GridLayoutManager) {
+            final GridLayoutManager gridLayoutManager = (GridLayoutManager) lm;
+            if (!(gridLayoutManager.getSpanSizeLookup()
+                    instanceof GridLayoutManager.DefaultSpanSizeLookup)) {
+                return false;
+            }
+            span = gridLayoutManager.getSpanCount();
+        }
+        final int first = lm.findFirstVisibleItemPosition();
+        final View firstView = first == RecyclerView.NO_POSITION
+                ? null : lm.findViewByPosition(first);
+        final float lineExtent = estimatePositionExtent(lm) * span;
+        if (firstView == null || lineExtent <= 0) {
+            return false;
+        }
+        final int offset = mDirection == VERTICAL
+                ? lm.getDecoratedTop(firstView) - rv.getPaddingTop()
+                : lm.getDecoratedLeft(firstView) - rv.getPaddingLeft();
+        // Distance from the start of the first visible line to the new start of the list.
+        final float distance = delta - offset;
+        final int lines = (int) Math.floor(distance / lineExtent);
+        final int firstLine = first - first % span;
+        final int target = Math.max(0, Math.min(firstLine + lines * span, lm.getItemCount() - 1));
+        final int jumped = target - target % span - firstLine;
+        if (jumped == 0 || jumped != lines * span) {
+            // Scrolling within a line or to the end of the list is cheap enough.
+            return false;
+        }
+        // Hit test the children laid out for the last jump before jumping again.
+        invalidateItemPositions();
+        final int position = getItemPosition(rv, mLastTouchPosition[HORIZONTAL],
+                mLastTouchPosition[VERTICAL]);
+        lm.scrollToPositionWithOffset(firstLine + jumped,
+                -Math.round(distance - lines * lineExtent));
+        invalidateItemPositions();
+        if (position != RecyclerView.NO_POSITION) {
+            updateSelectedPosition(rv, Math.max(0,
+                    Math.min(position + jumped, lm.getItemCount() - 1)), 0);
+        }
+        return true;
     }
 
     private void scrollBy(int delta) {
@@ -719,8 +1373,9 @@ public class DragMultiSelectHelper {
         } else if (mDirection == HORIZONTAL) {
             mRecyclerView.scrollBy(delta, 0);
         } else {
-            Logger.e("scrollBy: unknown direction =" + mDirection);
+            Logger.e("scrollBy: unknown direction = {}", mDirection);
         }
+        invalidateItemPositions();
         updateSelectedRange(mRecyclerView, mLastTouchPosition[HORIZONTAL], mLastTouchPosition[VERTICAL]);
     }
 
@@ -730,23 +1385,178 @@ public class DragMultiSelectHelper {
             Logger.d("updateSelectedRange with initial position value");
             return;
         }
-        int position = getItemPosition(rv, x, y);
-        if (position != RecyclerView.NO_POSITION && mSelectionRecorder.selectUpdate(position)) {
-            for (int updateToSelectIndex : mSelectionRecorder.getUpdateToSelectIndex()) {
-                mCallback.onSelectChange(updateToSelectIndex, true);
-            }
-            for (int updateToUnselectIndex : mSelectionRecorder.getUpdateToUnselectIndex()) {
-                mCallback.onSelectChange(updateToUnselectIndex, false);
+        TraceCompat.beginSection(TRACE_HIT_TEST_TAG);
+        final long startNanos = mMetricsListener != null ? System.nanoTime() : 0;
+        final int position = getItemPosition(rv, x, y);
+        final long hitTestNanos = mMetricsListener != null ? System.nanoTime() - startNanos : 0;
+        TraceCompat.endSection();
+        updateSelectedPosition(rv, position, hitTestNanos);
+    }
+
+    private void updateSelectedPosition(@NonNull RecyclerView rv, int position,
+            long hitTestNanos) {
+        TraceCompat.beginSection(TRACE_UPDATE_TAG);
+        final MetricsListener metricsListener = mMetricsListener;
+        final long startNanos = metricsListener != null ? System.nanoTime() : 0;
+        final long positionCount = mSelectionEngine.getDispatchedPositionCount();
+        if (mSelectionEngine.updateSelectedRange(position)
+                && mSelectionEngine.hasPendingUpdates() && !mFlushScheduled) {
+            mFlushScheduled = true;
+            ViewCompat.postOnAnimation(rv, mFlushRunnable);
+        }
+        if (metricsListener != null) {
+            final long updateNanos = System.nanoTime() - startNanos;
+            startGestureMetrics();
+            mGestureMetrics.recordUpdate(hitTestNanos, updateNanos);
+            metricsListener.onSelectionUpdate(hitTestNanos, updateNanos,
+                    (int) (mSelectionEngine.getDispatchedPositionCount() - positionCount));
+        }
+        TraceCompat.endSection();
+        rememberStableIds();
+    }
+
+    private void flushSelectionUpdates() {
+        cancelScheduledFlush();
+        if (mSelectionEngine.hasPendingUpdates()) {
+            TraceCompat.beginSection(TRACE_FLUSH_TAG);
+            mSelectionEngine.flushPendingUpdates();
+            TraceCompat.endSection();
+            rememberStableIds();
+        }
+    }
+
+    /**
+     * @return Whether the pointer extended the selection.
+     */
+    private boolean onPointerDown(@NonNull RecyclerView rv, @NonNull MotionEvent e) {
+        if (!mTwoFingerRangeSelection
+                || mSelectionEngine.startPosition() == SelectionEngine.NO_POSITION) {
+            return false;
+        }
+        final int index = e.getActionIndex();
+        final float x = e.getX(index);
+        final float y = e.getY(index);
+        if (getItemPosition(rv, x, y) == RecyclerView.NO_POSITION) {
+            return false;
+        }
+        Logger.i("Extend the selection by pointer {}", e.getPointerId(index));
+        mActivePointerId = e.getPointerId(index);
+        mExtendedByPointer = true;
+        // Selects the items in between as one range, and may start auto scrolling.
+        onMoveSample(rv, x, y);
+        updateSelectedRange(rv, mLastTouchPosition[HORIZONTAL], mLastTouchPosition[VERTICAL]);
+        return true;
+    }
+
+    private void onPointerUp(@NonNull MotionEvent e) {
+        final int index = e.getActionIndex();
+        if (e.getPointerId(index) != mActivePointerId) {
+            return;
+        }
+        if (mExtendedByPointer) {
+            // Keep the range, the anchor finger doesn't drive the selection anymore.
+            mActivePointerId = MotionEvent.INVALID_POINTER_ID;
+            mScroller.setVelocity(0);
+        } else {
+            // Follow another finger, like the scroll of RecyclerView.
+            mActivePointerId = e.getPointerId(index == 0 ? 1 : 0);
+        }
+    }
+
+    private int getActivePointerIndex(@NonNull MotionEvent e) {
+        if (mActivePointerId == MotionEvent.INVALID_POINTER_ID) {
+            // The selection may be activated without a down event seen.
+            return mExtendedByPointer ? -1 : 0;
+        }
+        return e.findPointerIndex(mActivePointerId);
+    }
+
+    private void traceMotionEvent(@NonNull MotionEvent e, int actionMask) {
+        if (mGestureTrace != null) {
+            mGestureTrace.recordMotion(actionMask, e.getX(), e.getY(),
+                    e.getEventTime() * 1000000L);
+        }
+    }
+
+    private void startGestureMetrics() {
+        if (mGestureMetricsStarted) {
+            return;
+        }
+        mGestureMetricsStarted = true;
+        mGestureStartPositionCount = mSelectionEngine.getDispatchedPositionCount();
+        final Display display = mRecyclerView != null ? mRecyclerView.getDisplay() : null;
+        final float refreshRate = display != null ? display.getRefreshRate() : 0;
+        mGestureMetrics.setFrameInterval(refreshRate > 0 ? (long) (1e9 / refreshRate) : 0);
+        mGestureMetrics.start(System.nanoTime());
+    }
+
+    private void finishGestureMetrics() {
+        final MetricsListener metricsListener = mMetricsListener;
+        if (metricsListener != null && mGestureMetricsStarted) {
+            mGestureMetrics.finish(System.nanoTime(),
+                    mSelectionEngine.getDispatchedPositionCount() - mGestureStartPositionCount);
+            metricsListener.onGestureFinished(mGestureMetrics);
+        }
+        mGestureMetricsStarted = false;
+    }
+
+    private void cancelScheduledFlush() {
+        if (mFlushScheduled) {
+            mFlushScheduled = false;
+            if (mRecyclerView != null) {
+                mRecyclerView.removeCallbacks(mFlushRunnable);
             }
         }
     }
 
     private int getItemPosition(@NonNull RecyclerView rv, float x, float y) {
-        final View v = rv.findChildViewUnder(x, y);
-        if (v == null) {
-            return RecyclerView.NO_POSITION;
+        if (mItemPositionResolver != null) {
+            return mItemPositionResolver.findItemPosition(rv, x, y);
+        }
+        updateLayoutStrategy(rv);
+        return mLayoutStrategy.findItemPosition(rv, x, y);
+    }
+
+    private void updateBoxSelection(@NonNull RecyclerView rv) {
+        int spanCount = 0;
+        final RecyclerView.LayoutManager layoutManager = rv.getLayoutManager();
+        if (mBoxSelection && layoutManager instanceof GridLayoutManager) {
+            final GridLayoutManager gridLayoutManager = (GridLayoutManager) layoutManager;
+            if (gridLayoutManager.getSpanSizeLookup()
+                    instanceof GridLayoutManager.DefaultSpanSizeLookup) {
+                spanCount = gridLayoutManager.getSpanCount();
+            } else {
+                Logger.i("Box selection needs all items to take one span");
+            }
+        }
+        final RecyclerView.Adapter<?> adapter = rv.getAdapter();
+        mSelectionEngine.setBoxSelection(spanCount, adapter == null ? 0 : adapter.getItemCount());
+    }
+
+    private void invalidateItemPositions() {
+        mLayoutStrategy.invalidate();
+        if (mItemPositionResolver != null) {
+            mItemPositionResolver.invalidate();
+        }
+    }
+
+    private void updateLayoutStrategy(@NonNull RecyclerView rv) {
+        if (mCustomLayoutStrategy != null) {
+            return;
+        }
+        final RecyclerView.LayoutManager layoutManager = rv.getLayoutManager();
+        if (layoutManager == mLayoutStrategyOwner) {
+            return;
+        }
+        mLayoutStrategyOwner = layoutManager;
+        if (layoutManager instanceof LinearLayoutManager) {
+            mLayoutStrategy = new LinearLayoutStrategy();
+        } else if (layoutManager instanceof StaggeredGridLayoutManager) {
+            mLayoutStrategy = new StaggeredGridLayoutStrategy();
+        } else {
+            Logger.i("Find items by child bounds for {}", layoutManager);
+            mLayoutStrategy = new ChildBoundsLayoutStrategy();
         }
-        return rv.getChildAdapterPosition(v);
     }
 
     private boolean isInSlideArea(MotionEvent e) {
@@ -779,11 +1589,29 @@ public class DragMultiSelectHelper {
         INSIDE_EXTEND
     }
 
+    /**
+     * Source of the frames which drive the auto scroll.
+     *
+     * @see #setFrameSource
+     */
+    public enum FrameSource {
+        /**
+         * Scroll in {@link Choreographer.FrameCallback}, the delta of each frame is computed
+         * from the vsync time, so the scroll keeps smooth at any refresh rate.
+         */
+        CHOREOGRAPHER,
+
+        /**
+         * Scroll in a runnable posted to the next animation frame of the RecyclerView.
+         */
+        ANIMATION_RUNNABLE
+    }
+
     /**
      * This class is the contract between DragSelectTouchHelper and your application. It lets you
      * update adapter when selection start/end and state changed.
      */
-    public abstract static class Callback {
+    public abstract static class Callback implements SelectionListener {
         /**
          * Called when changing item state.
          *
@@ -791,13 +1619,46 @@ public class DragMultiSelectHelper {
          * @param isSelected true if the position should be selected, false otherwise.
          * @return Whether to set the new state successfully.
          */
+        @Override
         public abstract boolean onSelectChange(int position, boolean isSelected);
 
+        /**
+         * Called when changing the state of a contiguous range of items.
+         * <p>
+         * The default implementation calls {@link #onSelectChange(int, boolean)} for each
+         * position in the range. Override it to apply the whole range at once, e.g. update the
+         * data set and call {@code notifyItemRangeChanged} only once.
+         *
+         * @param fromInclusive the first position of the range.
+         * @param toInclusive   the last position of the range.
+         * @param isSelected    true if the range should be selected, false otherwise.
+         */
+        @Override
+        public void onSelectRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+            for (int position = fromInclusive; position <= toInclusive; position++) {
+                onSelectChange(position, isSelected);
+            }
+        }
+
+        /**
+         * Called after a batch of changes has been dispatched by
+         * {@link #onSelectRangeChange(int, int, boolean)} and
+         * {@link #onSelectChange(int, boolean)}. If
+         * {@link DragMultiSelectHelper#setCoalesceSelectionUpdates(boolean)} is enabled, it's
+         * called at most once per frame, so it's a good place to notify the adapter.
+         *
+         * @param fromInclusive the first position changed in the batch.
+         * @param toInclusive   the last position changed in the batch.
+         */
+        @Override
+        public void onSelectionFlush(int fromInclusive, int toInclusive) { }
+
         /**
          * Called when selection start.
          *
          * @param start the first selected item.
          */
+        @Override
         public void onSelectStart(int start) { }
 
         /**
@@ -805,6 +1666,7 @@ public class DragMultiSelectHelper {
          *
          * @param end the last selected item.
          */
+        @Override
         public void onSelectEnd(int end) { }
     }
 
@@ -816,8 +1678,10 @@ public class DragMultiSelectHelper {
      */
     public abstract static class AdvanceCallback<T> extends Callback {
         private Behavior mBehavior;
-        private Set<T> mOriginalSelection;
         private boolean mFirstWasSelected;
+        private final PipelinePublisher mPublisher = new PipelinePublisher();
+        private final DeferredStates mDeferredStates = new DeferredStates(this, mPublisher);
+        private final UndoSnapshot<T> mUndoSnapshot = new UndoSnapshot<>(this, mDeferredStates);
 
         /**
          * Creates a SimpleCallback with default {@link Behavior#SelectAndReverse}# mode.
@@ -848,70 +1712,209 @@ public class DragMultiSelectHelper {
             mBehavior = behavior;
         }
 
+        /**
+         * Sets whether to snapshot the original selection lazily.
+         * <p>
+         * By default the whole selection is copied when the selection starts. In lazy mode
+         * only the original states of the positions touched by the selection are recorded,
+         * right before they are changed, so the cost grows with the length of the drag instead
+         * of the size of the existing selection. In this mode {@link #currentSelectedId()} or
+         * {@link #currentSelectedPositions()} must return the live selection rather than a
+         * copy, and it must not be changed by others during the selection.
+         *
+         * @param lazySnapshot true to snapshot lazily, false to copy the whole selection.
+         */
+        public void setLazySnapshot(boolean lazySnapshot) {
+            mUndoSnapshot.setLazy(lazySnapshot);
+        }
+
+        /**
+         * Sets a pipeline to publish the state changes to, in addition to
+         * {@link #updateSelectState(int, boolean)} and
+         * {@link #updateSelectRangeState(int, int, boolean)}, which then only need to update
+         * the UI. The pipeline delivers the changes in order on its executor, followed by a
+         * commit when the selection ends, so expensive work like persisting the selection
+         * never blocks a frame.
+         * <p>
+         * A single position is published only if it's updated successfully, a range is
+         * published as requested. With {@link #setDeferUnloadedItems(boolean)}, the states of
+         * the unloaded items are published once they are resolved.
+         *
+         * @param pipeline The pipeline to publish to, or null to stop publishing.
+         */
+        public void setSelectionPipeline(@Nullable SelectionPipeline pipeline) {
+            mPublisher.setPipeline(pipeline);
+        }
+
+        /**
+         * Sets whether to keep the states of the unloaded items by position until they are
+         * loaded. Disabled by default.
+         * <p>
+         * An item is unloaded if {@link #getItemId(int)} returns null, e.g. a placeholder of a
+         * paged list, return null for the positions whose item isn't loaded yet like
+         * {@code PagingDataAdapter.peek(position)} does, or override
+         * {@link #isItemLoaded(int)} and {@link #findLoadStateRunEnd(int, int)} to tell it by
+         * page. Their states are not passed to
+         * {@link #updateSelectState(int, boolean)} but kept as ranges of positions, which cost
+         * O(runs) whatever the number of items, and
+         * {@link #updatePendingRangeState(int, int, boolean)} is called to refresh the
+         * placeholders. Once the adapter notifies that the items changed, as it does when the
+         * placeholders are replaced by the loaded items, the states are resolved by
+         * {@link #resolvePendingStates(int, int)}. So a selection can go across pages which
+         * have never been loaded without loading them.
+         * <p>
+         * The original states of the unloaded items are their pending states.
+         *
+         * @param defer true to keep the states of the unloaded items.
+         */
+        public void setDeferUnloadedItems(boolean defer) {
+            mDeferredStates.setEnabled(defer);
+        }
+
+        /**
+         * @return Whether the item is unloaded and will be selected once loaded, e.g. to bind
+         * the placeholder.
+         */
+        public boolean isPendingSelected(int position) {
+            return mDeferredStates.selectedPositions().contains(position);
+        }
+
+        /**
+         * @return The positions of the unloaded items which will be selected once loaded, e.g.
+         * to act on the whole selection by ranges without loading them. It must not be
+         * modified.
+         */
+        @NonNull
+        public SelectionBitmap pendingSelectedPositions() {
+            return mDeferredStates.selectedPositions();
+        }
+
+        /**
+         * @return Whether there are states of unloaded items waiting to be resolved.
+         */
+        public boolean hasPendingStates() {
+            return mDeferredStates.hasStates();
+        }
+
+        /**
+         * Pass the pending states of the items in the range which are loaded now to
+         * {@link #updateSelectRangeState(int, int, boolean)}. It's called when the adapter
+         * notifies that the items changed, call it if the items are loaded without such a
+         * notification. The cost is proportional to the pending positions in the range.
+         *
+         * @param fromInclusive the first position of the range.
+         * @param toInclusive   the last position of the range.
+         */
+        public void resolvePendingStates(int fromInclusive, int toInclusive) {
+            mDeferredStates.resolve(fromInclusive, toInclusive);
+        }
+
         @CallSuper
         @Override
         public void onSelectStart(int start) {
-            mOriginalSelection = new HashSet<>();
-            Set<T> selected = currentSelectedId();
-            if (selected != null) {
-                mOriginalSelection.addAll(selected);
-            }
-            mFirstWasSelected = mOriginalSelection.contains(getItemId(start));
+            mPublisher.onSelectStart(start);
+            mUndoSnapshot.start(start);
+            mFirstWasSelected = mUndoSnapshot.wasSelected(start);
         }
 
         @CallSuper
         @Override
         public void onSelectEnd(int end) {
-            mOriginalSelection = null;
+            mPublisher.onSelectEnd(end);
+            mUndoSnapshot.clear();
         }
 
         @Override
         public final boolean onSelectChange(int position, boolean isSelected) {
+            mUndoSnapshot.record(position, position);
             boolean stateChanged;
             switch (mBehavior) {
                 case SelectAndKeep: {
-                    stateChanged = updateSelectState(position, true);
+                    stateChanged = applySelectState(position, true);
                     break;
                 }
                 case SelectAndReverse: {
-                    stateChanged = updateSelectState(position, isSelected);
+                    stateChanged = applySelectState(position, isSelected);
                     break;
                 }
                 case SelectAndUndo: {
                     if (isSelected) {
-                        stateChanged = updateSelectState(position, true);
+                        stateChanged = applySelectState(position, true);
                     } else {
-                        stateChanged = updateSelectState(position, mOriginalSelection.contains(getItemId(position)));
+                        stateChanged = applySelectState(position, wasSelected(position));
                     }
                     break;
                 }
                 case ToggleAndKeep: {
-                    stateChanged = updateSelectState(position, !mFirstWasSelected);
+                    stateChanged = applySelectState(position, !mFirstWasSelected);
                     break;
                 }
                 case ToggleAndReverse: {
                     if (isSelected) {
-                        stateChanged = updateSelectState(position, !mFirstWasSelected);
+                        stateChanged = applySelectState(position, !mFirstWasSelected);
                     } else {
-                        stateChanged = updateSelectState(position, mFirstWasSelected);
+                        stateChanged = applySelectState(position, mFirstWasSelected);
                     }
                     break;
                 }
                 case ToggleAndUndo: {
                     if (isSelected) {
-                        stateChanged = updateSelectState(position, !mFirstWasSelected);
+                        stateChanged = applySelectState(position, !mFirstWasSelected);
                     } else {
-                        stateChanged = updateSelectState(position, mOriginalSelection.contains(getItemId(position)));
+                        stateChanged = applySelectState(position, wasSelected(position));
                     }
                     break;
                 }
                 default:
                     // SelectAndReverse Mode
-                    stateChanged = updateSelectState(position, isSelected);
+                    stateChanged = applySelectState(position, isSelected);
             }
             return stateChanged;
         }
 
+        @Override
+        public void onSelectRangeChange(int fromInclusive, int toInclusive, boolean isSelected) {
+            mUndoSnapshot.record(fromInclusive, toInclusive);
+            if (!isSelected && (mBehavior == Behavior.SelectAndUndo
+                    || mBehavior == Behavior.ToggleAndUndo)) {
+                mUndoSnapshot.revert(fromInclusive, toInclusive);
+                return;
+            }
+            boolean newState;
+            switch (mBehavior) {
+                case SelectAndKeep:
+                case SelectAndUndo:
+                    newState = true;
+                    break;
+                case ToggleAndKeep:
+                case ToggleAndUndo:
+                    newState = !mFirstWasSelected;
+                    break;
+                case ToggleAndReverse:
+                    newState = isSelected != mFirstWasSelected;
+                    break;
+                case SelectAndReverse:
+                default:
+                    newState = isSelected;
+            }
+            mDeferredStates.applyRangeState(fromInclusive, toInclusive, newState);
+        }
+
+        /**
+         * Get the currently selected positions when selecting first item.
+         * <p>
+         * If the selection is kept by position, return it here instead of building the id set.
+         * It's snapshot in O(runs) and checked without {@link #getItemId(int)}, so
+         * {@link #currentSelectedId()} and {@link #getItemId(int)} are not called during the
+         * selection. The default implementation returns null to use the id set.
+         *
+         * @return the currently selected positions, or null to use {@link #currentSelectedId()}.
+         */
+        @Nullable
+        public SelectionBitmap currentSelectedPositions() {
+            return null;
+        }
+
         /**
          * Get the currently selected items when selecting first item.
          *
@@ -936,6 +1939,89 @@ public class DragMultiSelectHelper {
          */
         public abstract boolean updateSelectState(int position, boolean isSelected);
 
+        /**
+         * Update the selection status of a contiguous range of positions.
+         * <p>
+         * The default implementation calls {@link #updateSelectState(int, boolean)} for each
+         * position in the range. Override it to update the whole range at once.
+         *
+         * @param fromInclusive the first position of the range.
+         * @param toInclusive   the last position of the range.
+         * @param isSelected    true if the positions should be selected, false otherwise.
+         */
+        public void updateSelectRangeState(int fromInclusive, int toInclusive, boolean isSelected) {
+            for (int position = fromInclusive; position <= toInclusive; position++) {
+                updateSelectState(position, isSelected);
+            }
+        }
+
+        /**
+         * Called when the states of a range of unloaded items are kept until they are loaded,
+         * see {@link #setDeferUnloadedItems(boolean)}. Override it to refresh the placeholders.
+         *
+         * @param fromInclusive the first position of the range.
+         * @param toInclusive   the last position of the range.
+         * @param isSelected    true if the positions will be selected, false otherwise.
+         */
+        public void updatePendingRangeState(int fromInclusive, int toInclusive,
+                boolean isSelected) { }
+
+        /**
+         * @return Whether the item is loaded, only called if
+         * {@link #setDeferUnloadedItems(boolean)} is enabled. The default implementation
+         * checks whether {@link #getItemId(int)} returns null.
+         */
+        public boolean isItemLoaded(int position) {
+            return getItemId(position) != null;
+        }
+
+        /**
+         * Find the end of the run of items starting at {@code fromInclusive} which are all
+         * loaded or all unloaded, only called if {@link #setDeferUnloadedItems(boolean)} is
+         * enabled. The default implementation checks each item by
+         * {@link #isItemLoaded(int)}, override it to check page by page if the items are
+         * loaded in pages.
+         *
+         * @param fromInclusive the first position of the run.
+         * @param toInclusive   the last position the run may reach.
+         * @return The last position of the run.
+         */
+        public int findLoadStateRunEnd(int fromInclusive, int toInclusive) {
+            final boolean loaded = isItemLoaded(fromInclusive);
+            int position = fromInclusive;
+            while (position < toInclusive && isItemLoaded(position + 1) == loaded) {
+                position++;
+            }
+            return position;
+        }
+
+        void onItemRangeInserted(int positionStart, int itemCount) {
+            mDeferredStates.onItemRangeInserted(positionStart, itemCount);
+            mUndoSnapshot.onItemRangeInserted(positionStart, itemCount);
+        }
+
+        void onItemRangeRemoved(int positionStart, int itemCount) {
+            mDeferredStates.onItemRangeRemoved(positionStart, itemCount);
+            mUndoSnapshot.onItemRangeRemoved(positionStart, itemCount);
+        }
+
+        void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            if (fromPosition == toPosition) {
+                return;
+            }
+            // RecyclerView moves one item at a time, keep its states while moving.
+            mDeferredStates.onItemRangeMoved(fromPosition, toPosition, itemCount);
+            mUndoSnapshot.onItemRangeMoved(fromPosition, toPosition, itemCount);
+        }
+
+        private boolean applySelectState(int position, boolean isSelected) {
+            return mDeferredStates.applyState(position, isSelected);
+        }
+
+        private boolean wasSelected(int position) {
+            return mUndoSnapshot.wasSelected(position);
+        }
+
         /**
          * Different existing selection modes
          */
@@ -973,215 +2059,158 @@ public class DragMultiSelectHelper {
         }
     }
 
-    private static class AutoScroller {
-        private float mVelocity = 0;
-        private long mLastTime = 0;
-        private int mDelta = 0;
+    /**
+     * State of the helper saved by {@link #onSaveInstanceState()}.
+     */
+    public static class SavedState implements Parcelable {
+        public static final Creator<SavedState> CREATOR = new Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel source) {
+                return new SavedState(source.readInt() != 0, source.readFloat(),
+                        source.readFloat(), source.createByteArray());
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
 
+        final boolean mSlideState;
+        final float mSlideAreaStart;
+        final float mSlideAreaEnd;
         /**
-         * Indicates automatically scroll.
+         * The selected positions encoded by {@link SelectionBitmap#toByteArray()}.
          */
-        private boolean mIsScrolling;
-
-        interface ScrollStateChangeListener {
-            int SCROLL_IDLE = 1;
-            int SCROLL_STARTING = 0;
-            int SCROLL_STOPPING = 2;
-            void onScrollStateChange(int scrollState);
-        }
-        private final ScrollStateChangeListener mScrollStateChangeListener;
-
-        public AutoScroller(ScrollStateChangeListener scrollStateChangeListener) {
-            mScrollStateChangeListener = scrollStateChangeListener;
-        }
-
-        public void setVelocity(float velocity) {
-            Logger.d("AutoScroller setVelocity " + mVelocity + " -> " + velocity);
-            if (velocity != 0) {
-                boolean shouldStart = Math.abs(mVelocity) > 0
-                        && Math.abs(velocity) > Math.abs(mVelocity) ;
-                if (!mIsScrolling && shouldStart) {
-                    mScrollStateChangeListener.onScrollStateChange(ScrollStateChangeListener.SCROLL_STARTING);
-                    mLastTime = SystemClock.uptimeMillis();
-                    mDelta = 0;
-                    mIsScrolling = true;
-                } else {
-                    mScrollStateChangeListener.onScrollStateChange(ScrollStateChangeListener.SCROLL_IDLE);
-                }
-            } else {
-                if (mIsScrolling) {
-                    mScrollStateChangeListener.onScrollStateChange(ScrollStateChangeListener.SCROLL_STOPPING);
-                    mIsScrolling = false;
-                    mLastTime = 0;
-                    mDelta = 0;
-                } else {
-                    mScrollStateChangeListener.onScrollStateChange(ScrollStateChangeListener.SCROLL_IDLE);
-                }
-            }
-            mVelocity = velocity;
+        @Nullable
+        final byte[] mSelectedPositions;
+
+        SavedState(boolean slideState, float slideAreaStart, float slideAreaEnd,
+                @Nullable byte[] selectedPositions) {
+            mSlideState = slideState;
+            mSlideAreaStart = slideAreaStart;
+            mSlideAreaEnd = slideAreaEnd;
+            mSelectedPositions = selectedPositions;
         }
 
-        public int getDelta() {
-            if (mLastTime == 0) {
-                Logger.e("Cannot compute scroll delta before scrolling start");
-                return 0;
-            }
-            final long currentTime = SystemClock.uptimeMillis();
-            final long elapsedSinceDelta = currentTime - mLastTime;
-            mLastTime = currentTime;
-            mDelta = (int) (elapsedSinceDelta * mVelocity);
-            Logger.d("AutoScroller spend time:" + elapsedSinceDelta);
-            Logger.d("AutoScroller delta:" + mDelta);
-            return mDelta;
+        @Override
+        public int describeContents() {
+            return 0;
         }
 
-        public boolean isScrolling() {
-            return mIsScrolling;
+        @Override
+        public void writeToParcel(Parcel dest, int flags) {
+            dest.writeInt(mSlideState ? 1 : 0);
+            dest.writeFloat(mSlideAreaStart);
+            dest.writeFloat(mSlideAreaEnd);
+            dest.writeByteArray(mSelectedPositions);
         }
     }
 
-    private static class SelectionRecorder {
-        private final List<Integer> mUpdateToSelectSet = new ArrayList<>();
-        private final List<Integer> mUpdateToUnselectSet = new ArrayList<>();
+    private interface ScrollFrameListener {
         /**
-         * The selected items position.
+         * Called on each frame while auto scrolling.
+         *
+         * @param frameTimeNanos The time of the frame, in the {@link System#nanoTime()} time base.
+         * @return true to receive the next frame.
          */
-        private int mStart = RecyclerView.NO_POSITION;
-        private int mEnd = RecyclerView.NO_POSITION;
-        private int mLastRealStart = RecyclerView.NO_POSITION;
-        private int mLastRealEnd = RecyclerView.NO_POSITION;
+        boolean onScrollFrame(long frameTimeNanos);
+    }
 
-        private void selectFirst(int position) {
-            mStart = position;
-            mEnd = position;
-            mLastRealStart = position;
-            mLastRealEnd = position;
-        }
+    private interface ScrollFrameDriver {
+        void start(@NonNull RecyclerView recyclerView);
 
-        private void clearSelect() {
-            mStart = RecyclerView.NO_POSITION;
-            mEnd = RecyclerView.NO_POSITION;
-            mLastRealStart = RecyclerView.NO_POSITION;
-            mLastRealEnd = RecyclerView.NO_POSITION;
-            mUpdateToSelectSet.clear();
-            mUpdateToUnselectSet.clear();
-        }
+        void stop();
+    }
+
+    private static class ChoreographerFrameDriver implements ScrollFrameDriver,
+            Choreographer.FrameCallback {
+        private final ScrollFrameListener mListener;
+        private boolean mIsRunning;
 
-        private int startPosition() {
-            return mStart;
+        ChoreographerFrameDriver(ScrollFrameListener listener) {
+            mListener = listener;
         }
 
-        private int endPosition() {
-            return mEnd;
+        @Override
+        public void start(@NonNull RecyclerView recyclerView) {
+            if (!mIsRunning) {
+                mIsRunning = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
         }
 
-        private boolean selectUpdate(int position) {
-            if (mStart == RecyclerView.NO_POSITION && mEnd == RecyclerView.NO_POSITION) {
-                return false;
+        @Override
+        public void stop() {
+            if (mIsRunning) {
+                mIsRunning = false;
+                Choreographer.getInstance().removeFrameCallback(this);
             }
+        }
 
-            if (mEnd == position) {
-                return false;
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!mIsRunning) {
+                return;
             }
-            Logger.d("selectUpdate=" + position + ", mStart=" + mStart + ", mEnd=" + mEnd
-                    + ", mLastRealStart=" + mLastRealStart + ", mLastRealEnd=" + mLastRealEnd);
-            mEnd = position;
-            int newStart, newEnd;
-            newStart = Math.min(mStart, mEnd);
-            newEnd = Math.max(mStart, mEnd);
-
-            if (newStart > mLastRealStart) {
-                for (int i = mLastRealStart; i <= newStart - 1; i++) {
-                    mUpdateToUnselectSet.add(i);
-                }
-            } else if (newStart < mLastRealStart) {
-                for (int i = newStart; i <= mLastRealStart - 1; i++) {
-                    mUpdateToSelectSet.add(i);
-                }
+            if (mListener.onScrollFrame(frameTimeNanos)) {
+                Choreographer.getInstance().postFrameCallback(this);
+            } else {
+                mIsRunning = false;
             }
+        }
+    }
 
-            if (newEnd > mLastRealEnd) {
-                for (int i = mLastRealEnd + 1; i <= newEnd; i++) {
-                    mUpdateToSelectSet.add(i);
-                }
-            } else if (newEnd < mLastRealEnd) {
-                for (int i = newEnd + 1; i <= mLastRealEnd; i++) {
-                    mUpdateToUnselectSet.add(i);
-                }
-            }
+    private static class AnimationRunnableFrameDriver implements ScrollFrameDriver, Runnable {
+        private final ScrollFrameListener mListener;
+        private RecyclerView mRecyclerView;
 
-            mLastRealStart = newStart;
-            mLastRealEnd = newEnd;
-            return true;
+        AnimationRunnableFrameDriver(ScrollFrameListener listener) {
+            mListener = listener;
         }
 
-        private int[] getUpdateToSelectIndex() {
-            if (mStart == RecyclerView.NO_POSITION || mEnd == RecyclerView.NO_POSITION) {
-                return new int[0];
-            }
-            if (mUpdateToSelectSet.size() == 0) {
-                return new int[0];
-            }
-            Logger.d("getUpdateToSelectIndex: " + mUpdateToSelectSet.toString());
-            int[] result = new int[mUpdateToSelectSet.size()];
-            for (int i = 0; i < result.length; i++) {
-                result[i] = mUpdateToSelectSet.get(i);
-            }
-            mUpdateToSelectSet.clear();
-            return result;
+        @Override
+        public void start(@NonNull RecyclerView recyclerView) {
+            stop();
+            mRecyclerView = recyclerView;
+            mRecyclerView.post(this);
         }
 
-        private int[] getUpdateToUnselectIndex() {
-            if (mStart == RecyclerView.NO_POSITION || mEnd == RecyclerView.NO_POSITION) {
-                return new int[0];
-            }
-            if (mUpdateToUnselectSet.size() == 0) {
-                return new int[0];
-            }
-            Logger.d("getUpdateToUnselectIndex: " + mUpdateToUnselectSet.toString());
-            int[] result = new int[mUpdateToUnselectSet.size()];
-            for (int i = 0; i < result.length; i++) {
-                result[i] = mUpdateToUnselectSet.get(i);
+        @Override
+        public void stop() {
+            if (mRecyclerView != null) {
+                mRecyclerView.removeCallbacks(this);
+                mRecyclerView = null;
             }
-            mUpdateToUnselectSet.clear();
-            return result;
         }
-    }
 
-    private static class Logger {
-        private static final String TAG = "DMSH";
-        private static boolean sDebug = false;
-        private static void d(String msg) {
-            if (sDebug) {
-                Log.d(TAG, msg);
+        @Override
+        public void run() {
+            if (mRecyclerView == null) {
+                return;
+            }
+            if (mListener.onScrollFrame(System.nanoTime())) {
+                ViewCompat.postOnAnimation(mRecyclerView, this);
+            } else {
+                mRecyclerView = null;
             }
         }
+    }
 
-        private static void e(String msg) {
-            Log.e(TAG, msg);
-        }
-
-        private static void i(String msg) {
-            Log.i(TAG, msg);
+    private static class AndroidLogSink implements Logger.Sink {
+        @Override
+        public void d(String tag, String msg) {
+            Log.d(tag, msg);
         }
 
-        private static void logSelectStateChange(int before, int after) {
-            i("Select state changed: " + stateName(before) + " --> " + stateName(after));
+        @Override
+        public void i(String tag, String msg) {
+            Log.i(tag, msg);
         }
 
-        private static String stateName(int state) {
-            switch (state) {
-                case SELECT_STATE_NORMAL:
-                    return "NormalState";
-                case SELECT_STATE_SLIDE:
-                    return "SlideState";
-                case SELECT_STATE_DRAG_FROM_NORMAL:
-                    return "DragFromNormal";
-                case SELECT_STATE_DRAG_FROM_SLIDE:
-                    return "DragFromSlide";
-                default:
-                    return "Unknown";
-            }
+        @Override
+        public void e(String tag, String msg) {
+            Log.e(tag, msg);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Finds the adapter position of the item under a touch point. It's called on every move
+ * event and every auto scroll frame, so implementations should be cheap.
+ *
+ * @see DragMultiSelectHelper#setItemPositionResolver(ItemPositionResolver)
+ */
+public interface ItemPositionResolver {
+    /**
+     * Find the adapter position of the item under the given point.
+     *
+     * @param recyclerView The RecyclerView to look into.
+     * @param x            Horizontal position in pixels relative to the RecyclerView.
+     * @param y            Vertical position in pixels relative to the RecyclerView.
+     * @return The adapter position of the item, or {@link RecyclerView#NO_POSITION} if there
+     * is no item under the point.
+     */
+    int findItemPosition(@NonNull RecyclerView recyclerView, float x, float y);
+
+    /**
+     * Called when the children of the RecyclerView may have been moved, e.g. after an auto
+     * scroll step. Implementations which cache the layout should drop the cache here.
+     */
+    void invalidate();
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Adapts the helper to a {@link RecyclerView.LayoutManager}: it supplies the scroll axis used
+ * by the auto scroll and finds the item under a touch point.
+ * <p>
+ * Built-in strategies are used for {@link LinearLayoutStrategy LinearLayoutManager and
+ * GridLayoutManager}, and for {@link StaggeredGridLayoutStrategy StaggeredGridLayoutManager}.
+ * Other layout managers use {@link ChildBoundsLayoutStrategy} unless a strategy is set by
+ * {@link DragMultiSelectHelper#setLayoutStrategy(LayoutStrategy)}.
+ */
+public interface LayoutStrategy extends ItemPositionResolver {
+    /**
+     * Get the scroll axis of the layout.
+     *
+     * @param recyclerView The RecyclerView to look into.
+     * @return {@link RecyclerView#VERTICAL} or {@link RecyclerView#HORIZONTAL}.
+     */
+    int getOrientation(@NonNull RecyclerView recyclerView);
+}
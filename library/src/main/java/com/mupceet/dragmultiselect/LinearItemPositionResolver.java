@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * An {@link ItemPositionResolver} for {@link LinearLayoutManager} and {@link GridLayoutManager}.
+ * <p>
+ * These layout managers lay out their children row by row along the scroll axis. The bounds
+ * of the children are recorded in a snapshot sorted by the scroll axis, so a lookup is a
+ * binary search for the row, followed by a scan of at most span count items in that row.
+ * The last hit item is checked first, as the finger usually stays on the same item between
+ * two events.
+ * <p>
+ * The snapshot is reused until the children are scrolled or laid out again. While item
+ * animations are running, or if the children are not ordered along the scroll axis, it falls
+ * back to {@link RecyclerView#findChildViewUnder(float, float)}.
+ */
+public class LinearItemPositionResolver extends ChildBoundsResolver {
+    /**
+     * Whether the snapshot is sorted along the scroll axis and can be searched.
+     */
+    private boolean mOrdered = false;
+
+    @Override
+    int getOrientation(@NonNull RecyclerView recyclerView) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            return ((LinearLayoutManager) layoutManager).getOrientation();
+        }
+        return RecyclerView.VERTICAL;
+    }
+
+    @Override
+    boolean isSearchable() {
+        return mOrdered;
+    }
+
+    @Override
+    void recordChildren(@NonNull RecyclerView rv, int childCount) {
+        mOrdered = true;
+        // Children are added in layout order, which may be reversed on the screen.
+        final boolean reversed = childCount > 0
+                && mainStart(rv.getChildAt(0)) > mainStart(rv.getChildAt(childCount - 1));
+        for (int i = 0; i < childCount; i++) {
+            final View child = rv.getChildAt(reversed ? childCount - 1 - i : i);
+            final int position = rv.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION) {
+                // The item is being removed.
+                continue;
+            }
+            final float start = mainStart(child);
+            if (mCount > 0 && start < mMainStart[mCount - 1]) {
+                mOrdered = false;
+                return;
+            }
+            mPositions[mCount] = position;
+            mMainStart[mCount] = start;
+            mMainEnd[mCount] = mainEnd(child);
+            mCrossStart[mCount] = crossStart(child);
+            mCrossEnd[mCount] = crossEnd(child);
+            mCount++;
+        }
+    }
+
+    /**
+     * Find the row whose start is the last one before the point, then look for the item in it.
+     */
+    @Override
+    int search(float main, float cross) {
+        final int found = findLastStartingBefore(main);
+        if (found < 0) {
+            return -1;
+        }
+        final float rowStart = mMainStart[found];
+        for (int i = found; i >= 0 && mMainStart[i] == rowStart; i--) {
+            if (contains(i, main, cross)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import androidx.annotation.NonNull;
+
+import com.mupceet.dragmultiselect.core.GestureMetrics;
+
+/**
+ * Receives the timings of the selection hot path, set by
+ * {@link DragMultiSelectHelper#setMetricsListener(MetricsListener)}. All times are in
+ * nanoseconds, and all methods are called on the main thread, so they should return quickly.
+ * <p>
+ * The same sections are also traced by {@link androidx.core.os.TraceCompat}, so they can be
+ * seen in Perfetto or Systrace without a listener.
+ */
+public abstract class MetricsListener {
+    /**
+     * Called after each auto scroll frame.
+     *
+     * @param frameTimeNanos The vsync time of the frame.
+     * @param durationNanos  The time spent scrolling and updating the selection in the frame.
+     * @param droppedFrames  The number of frames dropped since the last scroll frame.
+     */
+    public void onScrollFrame(long frameTimeNanos, long durationNanos, int droppedFrames) { }
+
+    /**
+     * Called after each update of the selected range by a touch sample or an auto scroll
+     * frame.
+     *
+     * @param hitTestNanos     The time spent finding the item under the touch point.
+     * @param updateNanos      The time spent updating the range, including the callbacks.
+     * @param changedPositions The number of positions dispatched to the callbacks, which is 0
+     *                         if the changes are coalesced until the next frame.
+     */
+    public void onSelectionUpdate(long hitTestNanos, long updateNanos, int changedPositions) { }
+
+    /**
+     * Called when a selection is finished.
+     *
+     * @param metrics The totals of the gesture, which are only valid during this call.
+     */
+    public void onGestureFinished(@NonNull GestureMetrics metrics) { }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.mupceet.dragmultiselect.core.SelectionPipeline;
+
+/**
+ * Publishes the state changes of an {@link DragMultiSelectHelper.AdvanceCallback} to its
+ * {@link SelectionPipeline}, followed by a commit when the selection ends.
+ */
+final class PipelinePublisher {
+    @Nullable
+    private SelectionPipeline mPipeline;
+    private int mSelectStart = RecyclerView.NO_POSITION;
+
+    void setPipeline(@Nullable SelectionPipeline pipeline) {
+        mPipeline = pipeline;
+    }
+
+    void onSelectStart(int start) {
+        mSelectStart = start;
+    }
+
+    void onSelectEnd(int end) {
+        if (mPipeline != null) {
+            mPipeline.commit(mSelectStart, end);
+        }
+        mSelectStart = RecyclerView.NO_POSITION;
+    }
+
+    void publish(int fromInclusive, int toInclusive, boolean isSelected) {
+        if (mPipeline != null) {
+            mPipeline.publish(fromInclusive, toInclusive, isSelected);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import androidx.annotation.Nullable;
+
+import com.mupceet.dragmultiselect.DragMultiSelectHelper.AdvanceCallback;
+import com.mupceet.dragmultiselect.core.LazySelectionSnapshot;
+import com.mupceet.dragmultiselect.core.SelectionBitmap;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The original states of the items when a selection of an {@link AdvanceCallback} starts,
+ * which the undo behaviors revert to. It's a copy of the whole selection, by positions or by
+ * ids, or in lazy mode the states recorded right before the items are changed.
+ */
+final class UndoSnapshot<T> {
+    private final AdvanceCallback<T> mCallback;
+    private final DeferredStates mDeferredStates;
+    private boolean mLazy;
+    private Set<T> mOriginalSelection;
+    private SelectionBitmap mOriginalPositions;
+    /**
+     * The pending selected positions when the selection starts.
+     */
+    @Nullable
+    private SelectionBitmap mOriginalPending;
+    private final LazySelectionSnapshot mLazyOriginal = new LazySelectionSnapshot();
+    private final LiveSelectionSource mLiveSource = new LiveSelectionSource();
+    private final UndoRangeVisitor mUndoRangeVisitor = new UndoRangeVisitor();
+
+    UndoSnapshot(AdvanceCallback<T> callback, DeferredStates deferredStates) {
+        mCallback = callback;
+        mDeferredStates = deferredStates;
+    }
+
+    void setLazy(boolean lazy) {
+        mLazy = lazy;
+    }
+
+    void start(int start) {
+        final SelectionBitmap positions = mCallback.currentSelectedPositions();
+        if (mLazy) {
+            mLiveSource.mPositions = positions;
+            mLiveSource.mIds = positions == null ? mCallback.currentSelectedId() : null;
+            mLiveSource.mPending = mDeferredStates.isEnabled();
+            mLazyOriginal.start(start, mLiveSource);
+            return;
+        }
+        if (positions != null) {
+            mOriginalPositions = positions.snapshot();
+            return;
+        }
+        mOriginalSelection = new HashSet<>();
+        final Set<T> selected = mCallback.currentSelectedId();
+        if (selected != null) {
+            mOriginalSelection.addAll(selected);
+        }
+        if (mDeferredStates.isEnabled()) {
+            mOriginalPending = mDeferredStates.selectedPositions().snapshot();
+        }
+    }
+
+    void clear() {
+        mOriginalSelection = null;
+        mOriginalPositions = null;
+        mOriginalPending = null;
+        mLazyOriginal.clear();
+        mLiveSource.mPositions = null;
+        mLiveSource.mIds = null;
+    }
+
+    /**
+     * Record the original states of the range in lazy mode, right before it's changed.
+     */
+    void record(int fromInclusive, int toInclusive) {
+        mLazyOriginal.record(fromInclusive, toInclusive);
+    }
+
+    boolean wasSelected(int position) {
+        if (mLazyOriginal.isStarted()) {
+            return mLazyOriginal.wasSelected(position);
+        }
+        if (mOriginalPositions != null) {
+            return mOriginalPositions.contains(position);
+        }
+        final T id = mCallback.getItemId(position);
+        if (id == null && mOriginalPending != null) {
+            return mOriginalPending.contains(position);
+        }
+        return mOriginalSelection.contains(id);
+    }
+
+    /**
+     * Revert the range to the original states.
+     */
+    void revert(int fromInclusive, int toInclusive) {
+        if (mLazyOriginal.isStarted()) {
+            revertLazily(fromInclusive, toInclusive);
+        } else if (mOriginalPositions != null) {
+            // Revert the runs of originally selected items and the gaps between them.
+            mUndoRangeVisitor.revert(fromInclusive, toInclusive);
+        } else {
+            // Each item reverts to its own original state, they can't be updated together.
+            for (int position = fromInclusive; position <= toInclusive; position++) {
+                mCallback.onSelectChange(position, false);
+            }
+        }
+    }
+
+    void onItemRangeInserted(int positionStart, int itemCount) {
+        if (mOriginalPending != null) {
+            mOriginalPending.insertRange(positionStart, itemCount);
+        }
+        if (mOriginalPositions != null) {
+            mOriginalPositions.insertRange(positionStart, itemCount);
+        }
+        mLazyOriginal.insertRange(positionStart, itemCount);
+    }
+
+    void onItemRangeRemoved(int positionStart, int itemCount) {
+        if (mOriginalPending != null) {
+            mOriginalPending.removeRange(positionStart, itemCount);
+        }
+        if (mOriginalPositions != null) {
+            mOriginalPositions.removeRange(positionStart, itemCount);
+        }
+        mLazyOriginal.removeRange(positionStart, itemCount);
+    }
+
+    void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        if (mOriginalPending != null) {
+            DeferredStates.moveState(mOriginalPending, fromPosition, toPosition, itemCount);
+        }
+        if (mOriginalPositions != null) {
+            DeferredStates.moveState(mOriginalPositions, fromPosition, toPosition, itemCount);
+        }
+        mLazyOriginal.moveItem(fromPosition, toPosition);
+    }
+
+    /**
+     * Revert the range to the recorded states, positions with the same state are updated
+     * together.
+     */
+    private void revertLazily(int fromInclusive, int toInclusive) {
+        int runStart = fromInclusive;
+        boolean runState = mLazyOriginal.wasSelected(fromInclusive);
+        for (int position = fromInclusive + 1; position <= toInclusive; position++) {
+            final boolean state = mLazyOriginal.wasSelected(position);
+            if (state != runState) {
+                mDeferredStates.applyRangeState(runStart, position - 1, runState);
+                runStart = position;
+                runState = state;
+            }
+        }
+        mDeferredStates.applyRangeState(runStart, toInclusive, runState);
+    }
+
+    private class LiveSelectionSource implements LazySelectionSnapshot.Source {
+        private SelectionBitmap mPositions;
+        private Set<T> mIds;
+        private boolean mPending;
+
+        @Override
+        public boolean isSelected(int position) {
+            if (mPositions != null) {
+                return mPositions.contains(position);
+            }
+            final T id = mCallback.getItemId(position);
+            if (id == null && mPending) {
+                return mDeferredStates.selectedPositions().contains(position);
+            }
+            return mIds != null && mIds.contains(id);
+        }
+    }
+
+    private class UndoRangeVisitor implements SelectionBitmap.RunVisitor {
+        private int mNext;
+
+        void revert(int fromInclusive, int toInclusive) {
+            mNext = fromInclusive;
+            mOriginalPositions.forEachRun(fromInclusive, toInclusive, this);
+            if (mNext <= toInclusive) {
+                mDeferredStates.applyRangeState(mNext, toInclusive, false);
+            }
+        }
+
+        @Override
+        public void onRun(int fromInclusive, int toInclusive) {
+            if (mNext < fromInclusive) {
+                mDeferredStates.applyRangeState(mNext, fromInclusive - 1, false);
+            }
+            mDeferredStates.applyRangeState(fromInclusive, toInclusive, true);
+            mNext = toInclusive + 1;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020 Mupceet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mupceet.dragmultiselect;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.util.SparseIntArray;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Creates ViewHolders for the items ahead of the auto scroll in idle time, and puts them
+ * into the {@link RecyclerView.RecycledViewPool}, so they don't have to be inflated on the
+ * frame in which they scroll into view.
+ * <p>
+ * The prefetch of RecyclerView is only triggered by its own touch scroll and fling, not by
+ * {@link RecyclerView#scrollBy(int, int)}, and its registry is not public, so the helper
+ * prepares the holders itself. The number of items to prepare is proportional to the
+ * velocity. The pool keeps at most {@code setMaxRecycledViews} holders of each view type,
+ * extra holders are not created.
+ */
+final class ViewHolderPrefetcher implements MessageQueue.IdleHandler {
+    /**
+     * How far ahead of the auto scroll to prepare, in milliseconds of scrolling.
+     */
+    private static final long LOOKAHEAD_MS = 200;
+    /**
+     * Time budget of one idle pass, in milliseconds.
+     */
+    private static final long IDLE_BUDGET_MS = 4;
+
+    /**
+     * The number of holders to create for each view type.
+     */
+    private final SparseIntArray mDeficits = new SparseIntArray();
+    /**
+     * The capacity of the pool for each view type which has been found full.
+     */
+    private final SparseIntArray mPoolLimits = new SparseIntArray();
+    private int mPendingCount;
+    private RecyclerView mRecyclerView;
+    private boolean mScheduled;
+
+    /**
+     * Called on each auto scroll frame to compute the holders needed ahead of the scroll.
+     *
+     * @param rv        The scrolling RecyclerView.
+     * @param velocity  The scroll velocity in pixels per millisecond.
+     * @param direction The scroll axis, {@link RecyclerView#VERTICAL} or
+     *                  {@link RecyclerView#HORIZONTAL}.
+     */
+    void update(@NonNull RecyclerView rv, float velocity, int direction) {
+        final RecyclerView.Adapter<?> adapter = rv.getAdapter();
+        final int childCount = rv.getChildCount();
+        final int extent = direction == RecyclerView.VERTICAL ? rv.getHeight() : rv.getWidth();
+        if (adapter == null || childCount == 0 || extent <= 0 || velocity == 0) {
+            return;
+        }
+        // The children fill the extent, which gives the number of items per pixel.
+        final float distance = Math.abs(velocity) * LOOKAHEAD_MS;
+        final int itemsAhead = Math.min(childCount,
+                (int) Math.ceil(distance * childCount / extent));
+        final int step = velocity > 0 ? 1 : -1;
+        int edge = RecyclerView.NO_POSITION;
+        for (int i = 0; i < childCount; i++) {
+            final int position = rv.getChildAdapterPosition(rv.getChildAt(i));
+            if (position != RecyclerView.NO_POSITION && (edge == RecyclerView.NO_POSITION
+                    || (step > 0 ? position > edge : position < edge))) {
+                edge = position;
+            }
+        }
+        if (edge == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        mDeficits.clear();
+        final int itemCount = adapter.getItemCount();
+        for (int i = 1; i <= itemsAhead; i++) {
+            final int position = edge + step * i;
+            if (position < 0 || position >= itemCount) {
+                break;
+            }
+            final int type = adapter.getItemViewType(position);
+            mDeficits.put(type, mDeficits.get(type) + 1);
+        }
+        final RecyclerView.RecycledViewPool pool = rv.getRecycledViewPool();
+        mPendingCount = 0;
+        for (int i = 0; i < mDeficits.size(); i++) {
+            final int type = mDeficits.keyAt(i);
+            final int needed = Math.min(mDeficits.valueAt(i),
+                    mPoolLimits.get(type, Integer.MAX_VALUE));
+            final int deficit = Math.max(0, needed - pool.getRecycledViewCount(type));
+            mDeficits.setValueAt(i, deficit);
+            mPendingCount += deficit;
+        }
+        mRecyclerView = rv;
+        if (mPendingCount > 0 && !mScheduled) {
+            mScheduled = true;
+            Looper.myQueue().addIdleHandler(this);
+        }
+    }
+
+    /**
+     * Drop the pending work, the holders already created stay in the pool.
+     */
+    void stop() {
+        if (mScheduled) {
+            mScheduled = false;
+            Looper.myQueue().removeIdleHandler(this);
+        }
+        mDeficits.clear();
+        mPoolLimits.clear();
+        mPendingCount = 0;
+        mRecyclerView = null;
+    }
+
+    @Override
+    public boolean queueIdle() {
+        final RecyclerView rv = mRecyclerView;
+        final RecyclerView.Adapter<?> adapter = rv == null ? null : rv.getAdapter();
+        if (adapter == null || rv.isComputingLayout()) {
+            mScheduled = false;
+            return false;
+        }
+        final RecyclerView.RecycledViewPool pool = rv.getRecycledViewPool();
+        final long deadline = SystemClock.uptimeMillis() + IDLE_BUDGET_MS;
+        for (int i = 0; i < mDeficits.size() && mPendingCount > 0; i++) {
+            final int type = mDeficits.keyAt(i);
+            int deficit = mDeficits.valueAt(i);
+            while (deficit > 0) {
+                if (SystemClock.uptimeMillis() > deadline) {
+                    // Go on in the next idle time.
+                    mDeficits.setValueAt(i, deficit);
+                    return true;
+                }
+                final int count = pool.getRecycledViewCount(type);
+                pool.putRecycledView(adapter.createViewHolder(rv, type));
+                if (pool.getRecycledViewCount(type) <= count) {
+                    // The pool of this type is full.
+                    mPoolLimits.put(type, count);
+                    mPendingCount -= deficit;
+                    deficit = 0;
+                    break;
+                }
+                deficit--;
+                mPendingCount--;
+            }
+            mDeficits.setValueAt(i, deficit);
+        }
+        mScheduled = false;
+        return false;
+    }
+}